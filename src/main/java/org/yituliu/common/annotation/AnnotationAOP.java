@@ -4,22 +4,75 @@ import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Component;
+import org.yituliu.common.enums.ResultCode;
+import org.yituliu.common.exception.ServiceException;
+import org.yituliu.common.utils.LocalCache;
 import org.yituliu.common.utils.LogUtils;
 
-import java.lang.reflect.InvocationTargetException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Aspect
 @Component
 public class AnnotationAOP {
 
+    /**
+     * 一级缓存失效通知的频道，消息内容为"实例ID|缓存key"
+     */
+    private static final String INVALIDATE_CHANNEL = "cache:invalidate";
+
     private final RedisTemplate<String, Object> redisTemplate;
 
-    public AnnotationAOP(RedisTemplate<String, Object> redisTemplate) {
+    // 当前实例ID，收到自己发布的失效通知时忽略
+    private final String instanceId = UUID.randomUUID().toString();
+
+    // 每个注解方法一个缓存key生成器
+    private final Map<Method, CacheKeyGenerator> keyGenerators = new ConcurrentHashMap<>();
+
+    // 每个注解方法一个一级缓存
+    private final Map<Method, LocalCache> localCaches = new ConcurrentHashMap<>();
+
+    // 正在加载的缓存key，同一个key的并发调用者等待同一次加载
+    private final Map<String, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+
+    // 缓存key前缀 → 熔断器
+    private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+
+    // 正在后台刷新的缓存key
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    // 每个使用二进制编码的注解方法一个编解码器
+    private final Map<Method, BinaryCacheCodec> binaryCodecs = new ConcurrentHashMap<>();
+
+    private final RedisTemplate<String, byte[]> binaryRedisTemplate;
+
+    private final Executor executor;
+
+    public AnnotationAOP(RedisTemplate<String, Object> redisTemplate,
+                         @Qualifier("binaryRedisTemplate") RedisTemplate<String, byte[]> binaryRedisTemplate,
+                         RedisMessageListenerContainer redisMessageListenerContainer,
+                         @Qualifier("asyncExecutor") Executor executor) {
         this.redisTemplate = redisTemplate;
+        this.binaryRedisTemplate = binaryRedisTemplate;
+        this.executor = executor;
+        redisMessageListenerContainer.addMessageListener(this::onInvalidate, new ChannelTopic(INVALIDATE_CHANNEL));
     }
 
 
@@ -33,73 +86,239 @@ public class AnnotationAOP {
         // 获取方法参数
         Object[] args = joinPoint.getArgs();
 
-        String cacheKey = redisCacheable.key();
+        String cacheKey = keyGenerators.computeIfAbsent(method, k -> new CacheKeyGenerator(k, redisCacheable))
+                .generate(args);
 
-        if (args.length > 0) {
-            cacheKey += generateCacheKey(args[0], redisCacheable.paramOrMethod());
+        LocalCache localCache = redisCacheable.localCache()
+                ? localCaches.computeIfAbsent(method,
+                        k -> new LocalCache(redisCacheable.localMaxSize(), redisCacheable.localTimeout()))
+                : null;
+        if (localCache != null) {
+            Object cache = localCache.get(cacheKey);
+            if (cache != null && !isStale(cache)) {
+                return unwrap(cache);
+            }
         }
 
-        LogUtils.info("cacheKey：{}",cacheKey);
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = loading.putIfAbsent(cacheKey, future);
+        if (existing != null) {
+            // 其他调用者正在加载，等待其结果
+            try {
+                return unwrap(existing.join());
+            } catch (CompletionException e) {
+                throw e.getCause();
+            }
+        }
 
-        Object cache = "";
+        try {
+            Object cache = load(joinPoint, redisCacheable, cacheKey);
+            if (localCache != null && cache != null && !isStale(cache)) {
+                localCache.put(cacheKey, cache);
+            }
+            future.complete(cache);
+            return unwrap(cache);
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(cacheKey, future);
+        }
+    }
 
-        cache = redisTemplate.opsForValue().get(cacheKey);
-//        log.info(pjp.getSignature().getName() + "读取缓存内容");
+    /**
+     * 读取Redis缓存，未命中时执行方法并写入Redis
+     * 缓存已逻辑过期时返回旧值，并在后台刷新
+     *
+     * @return Redis中的缓存内容（缓存值或CacheEnvelope），方法结果未缓存时返回CacheEnvelope或null
+     */
+    private Object load(ProceedingJoinPoint joinPoint, RedisCacheable redisCacheable, String cacheKey) throws Throwable {
+        Object cache = readCache(joinPoint, redisCacheable, cacheKey);
         if (cache != null) {
+            if (isStale(cache)) {
+                refreshInBackground(joinPoint, redisCacheable, cacheKey);
+            }
             return cache;
         }
-//        log.info("读取数据库内容");
-        Object proceed = joinPoint.proceed();
+        return proceedAndCache(joinPoint, redisCacheable, cacheKey);
+    }
+
+    /**
+     * 执行方法并写入Redis，方法因后端不可用抛出异常时计入熔断器
+     */
+    private Object proceedAndCache(ProceedingJoinPoint joinPoint, RedisCacheable redisCacheable, String cacheKey)
+            throws Throwable {
+        CircuitBreaker circuitBreaker = redisCacheable.failureThreshold() > 0
+                ? circuitBreakers.computeIfAbsent(redisCacheable.key(),
+                        k -> new CircuitBreaker(redisCacheable.failureThreshold(), redisCacheable.openTimeout()))
+                : null;
+        if (circuitBreaker != null && !circuitBreaker.allowRequest()) {
+            throw new ServiceException(ResultCode.INTERFACE_INNER_INVOKE_ERROR);
+        }
+
+        Object proceed;
+        try {
+            proceed = joinPoint.proceed();
+        } catch (Throwable e) {
+            if (circuitBreaker != null && isBackendFailure(e)) {
+                circuitBreaker.recordFailure();
+            }
+            throw e;
+        }
+        if (circuitBreaker != null) {
+            circuitBreaker.recordSuccess();
+        }
+
+        long now = System.currentTimeMillis();
+        if (proceed == null) {
+            int nullTimeout = redisCacheable.nullTimeout();
+            if (nullTimeout <= 0) {
+                return null;
+            }
+            // 空结果短时间缓存，避免重复请求不可用的后端
+            CacheEnvelope envelope = new CacheEnvelope(null, now + nullTimeout * 1000L);
+            writeCache(joinPoint, redisCacheable, cacheKey, envelope, nullTimeout);
+            if (redisCacheable.localCache()) {
+                publishInvalidate(cacheKey);
+            }
+            return envelope;
+        }
 
         int timeout = redisCacheable.timeout();
+        int staleTimeout = redisCacheable.staleTimeout();
+        Object cache = proceed;
         if (timeout < 0) {
-            redisTemplate.opsForValue().set(cacheKey, proceed);
+            writeCache(joinPoint, redisCacheable, cacheKey, proceed, -1);
+        } else if (staleTimeout > 0) {
+            // Redis中多保留staleTimeout秒，逻辑过期后作为旧值返回
+            cache = new CacheEnvelope(proceed, now + timeout * 1000L);
+            writeCache(joinPoint, redisCacheable, cacheKey, cache, timeout + staleTimeout);
         } else {
-            redisTemplate.opsForValue().set(cacheKey, proceed, timeout, TimeUnit.SECONDS);
+            writeCache(joinPoint, redisCacheable, cacheKey, proceed, timeout);
+        }
+        if (redisCacheable.localCache()) {
+            publishInvalidate(cacheKey);                                      // 其他实例的一级缓存可能还保存着旧值
         }
 
-        LogUtils.info("数据已缓存，缓存key: {}" + cacheKey);
-        return proceed;
+        LogUtils.info("数据已缓存，缓存key: {}", cacheKey);
+        return cache;
     }
 
     /**
-     * 生成缓存键。
+     * 在后台刷新已逻辑过期的缓存，同一个key同时只有一个刷新任务
+     * 刷新在线程池中执行，被缓存的方法不能依赖请求线程的上下文
+     */
+    private void refreshInBackground(ProceedingJoinPoint joinPoint, RedisCacheable redisCacheable, String cacheKey) {
+        if (!refreshing.add(cacheKey)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    proceedAndCache(joinPoint, redisCacheable, cacheKey);
+                } catch (Throwable e) {
+                    LogUtils.error("后台刷新缓存失败，缓存key: {}", cacheKey, e);
+                } finally {
+                    refreshing.remove(cacheKey);
+                }
+            });
+        } catch (RuntimeException e) {
+            refreshing.remove(cacheKey);
+            throw e;
+        }
+    }
+
+    /**
+     * 按注解的编码格式读取Redis缓存，二进制缓存无法解码时视为未命中
+     */
+    private Object readCache(ProceedingJoinPoint joinPoint, RedisCacheable redisCacheable, String cacheKey) {
+        if (redisCacheable.codec() == CacheCodec.JSON) {
+            return redisTemplate.opsForValue().get(cacheKey);
+        }
+        byte[] bytes = binaryRedisTemplate.opsForValue().get(cacheKey);
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            return binaryCodecOf(joinPoint, redisCacheable).decode(bytes);
+        } catch (Exception e) {
+            LogUtils.error("缓存解码失败，缓存key: {}", cacheKey, e);
+            return null;
+        }
+    }
+
+    /**
+     * 按注解的编码格式写入Redis缓存
      *
-     * @param param     方法参数，可以是基本类型或自定义对象。根据此参数生成缓存键。
-     * @param paramOrMethod 如果参数是自定义对象，则指定用于生成缓存键的方法名；如果是基本类型或不需要调用方法获取键，则为空字符串。
-     * @return 返回一个字符串形式的缓存键，该键将用于Redis中存储和检索缓存数据。
+     * @param timeout 缓存时间，单位秒，小于0时不过期
      */
-    private String generateCacheKey(Object param, String paramOrMethod) {
-        // 检查参数是否为null，如果为null则返回空字符串作为缓存键
-        if (param == null) {
-            return "";
-        }
-
-        // 如果keyMethod为空字符串，说明参数是基本类型或者不需要通过方法获取key
-        if (paramOrMethod.isEmpty()) {
-            // 直接使用参数的toString()方法生成缓存键
-            // 注意：对于基本类型和String类型，这通常是安全的；但对于其他类型的对象，需要确保其toString()方法能够唯一标识对象
-            return "";
-        }else  if ("param".equals(paramOrMethod)) {
-            return "-"+param.toString();
-        }else {
-            try {
-                // 如果提供了keyMethod，尝试在参数对象上调用该方法
-                // 获取参数对象的Class对象，并查找名为keyMethod的方法
-                Method method = param.getClass().getMethod(paramOrMethod);
-
-                // 调用该方法并获取返回值作为缓存键
-                Object keyValue = method.invoke(param);
-
-                // 将返回值转换为字符串形式，如果没有返回值（即返回null），则返回空字符串
-                return keyValue != null ? "-"+keyValue.toString() : "-";
-            } catch (NoSuchMethodException e) {
-                // 如果没有找到指定的方法，抛出运行时异常
-                throw new RuntimeException("The specified key method '" + paramOrMethod + "' does not exist in the parameter class.", e);
-            } catch (IllegalAccessException | InvocationTargetException e) {
-                // 如果方法访问失败或方法执行过程中抛出异常，抛出运行时异常
-                throw new RuntimeException("Failed to invoke the key method '" + paramOrMethod + "'.", e);
+    private void writeCache(ProceedingJoinPoint joinPoint, RedisCacheable redisCacheable, String cacheKey,
+                            Object cache, int timeout) throws IOException {
+        if (redisCacheable.codec() == CacheCodec.JSON) {
+            if (timeout < 0) {
+                redisTemplate.opsForValue().set(cacheKey, cache);
+            } else {
+                redisTemplate.opsForValue().set(cacheKey, cache, timeout, TimeUnit.SECONDS);
             }
+            return;
+        }
+        byte[] bytes = binaryCodecOf(joinPoint, redisCacheable).encode(cache);
+        if (timeout < 0) {
+            binaryRedisTemplate.opsForValue().set(cacheKey, bytes);
+        } else {
+            binaryRedisTemplate.opsForValue().set(cacheKey, bytes, timeout, TimeUnit.SECONDS);
+        }
+    }
+
+    private BinaryCacheCodec binaryCodecOf(ProceedingJoinPoint joinPoint, RedisCacheable redisCacheable) {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        return binaryCodecs.computeIfAbsent(method, k -> new BinaryCacheCodec(k, redisCacheable.compressThreshold()));
+    }
+
+    /**
+     * 是否为后端不可用导致的异常：异常链中有IO异常、超时或数据访问异常（包括Redis异常）
+     * ServiceException等业务异常（如无效的参数）说明后端正常响应，不计入熔断器，避免个别用户的无效请求熔断所有用户
+     */
+    private static boolean isBackendFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ServiceException) {
+                return false;
+            }
+            if (cause instanceof IOException || cause instanceof UncheckedIOException
+                    || cause instanceof TimeoutException || cause instanceof DataAccessException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isStale(Object cache) {
+        return cache instanceof CacheEnvelope envelope && envelope.expired();
+    }
+
+    private static Object unwrap(Object cache) {
+        return cache instanceof CacheEnvelope envelope ? envelope.getValue() : cache;
+    }
+
+    private void publishInvalidate(String cacheKey) {
+        try {
+            redisTemplate.convertAndSend(INVALIDATE_CHANNEL, instanceId + "|" + cacheKey);
+        } catch (Exception e) {
+            // 通知失败时其他实例的一级缓存在localTimeout后过期
+            LogUtils.error("发布缓存失效通知失败，缓存key: {}", cacheKey, e);
+        }
+    }
+
+    private void onInvalidate(Message message, byte[] pattern) {
+        Object body = redisTemplate.getValueSerializer().deserialize(message.getBody());
+        if (!(body instanceof String text)) {
+            return;
+        }
+        int separator = text.indexOf('|');
+        if (separator < 0 || instanceId.equals(text.substring(0, separator))) {
+            return;
         }
+        String cacheKey = text.substring(separator + 1);
+        localCaches.values().forEach(cache -> cache.remove(cacheKey));
     }
 }
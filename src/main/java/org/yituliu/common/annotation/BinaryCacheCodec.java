@@ -0,0 +1,116 @@
+package org.yituliu.common.annotation;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 缓存值的Smile二进制编解码器，每个使用CacheCodec.SMILE的注解方法创建一次
+ * 不写入@class类型信息，按方法的泛型返回类型解码，编码后超过压缩阈值时用Deflate压缩
+ * <p>
+ * 格式：1字节标志位 [8字节逻辑过期时间戳] [Smile数据]
+ */
+class BinaryCacheCodec {
+
+    private static final int FLAG_COMPRESSED = 1;     // Smile数据已压缩
+    private static final int FLAG_ENVELOPE = 1 << 1;  // 带逻辑过期时间（CacheEnvelope）
+    private static final int FLAG_NULL = 1 << 2;      // 空结果缓存，没有Smile数据
+
+    private static final SmileMapper SMILE_MAPPER = new SmileMapper();
+
+    static {
+        SMILE_MAPPER.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    private final ObjectWriter writer;
+    private final ObjectReader reader;
+    private final int compressThreshold;
+
+    BinaryCacheCodec(Method method, int compressThreshold) {
+        JavaType type = SMILE_MAPPER.getTypeFactory().constructType(method.getGenericReturnType());
+        this.writer = SMILE_MAPPER.writerFor(type);
+        this.reader = SMILE_MAPPER.readerFor(type);
+        this.compressThreshold = compressThreshold;
+    }
+
+    /**
+     * 编码缓存内容
+     *
+     * @param cache 缓存值或CacheEnvelope
+     * @return 编码后的字节数组
+     */
+    byte[] encode(Object cache) throws IOException {
+        int flags = 0;
+        Object value = cache;
+        long expireAt = 0;
+        if (cache instanceof CacheEnvelope envelope) {
+            flags |= FLAG_ENVELOPE;
+            expireAt = envelope.getExpireAt();
+            value = envelope.getValue();
+        }
+        byte[] payload = new byte[0];
+        if (value == null) {
+            flags |= FLAG_NULL;
+        } else {
+            payload = writer.writeValueAsBytes(value);
+            if (compressThreshold > 0 && payload.length > compressThreshold) {
+                payload = deflate(payload);
+                flags |= FLAG_COMPRESSED;
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(1 + ((flags & FLAG_ENVELOPE) != 0 ? 8 : 0) + payload.length);
+        buffer.put((byte) flags);
+        if ((flags & FLAG_ENVELOPE) != 0) {
+            buffer.putLong(expireAt);
+        }
+        buffer.put(payload);
+        return buffer.array();
+    }
+
+    /**
+     * 解码缓存内容
+     *
+     * @param bytes 编码后的字节数组
+     * @return 缓存值或CacheEnvelope
+     */
+    Object decode(byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int flags = buffer.get();
+        long expireAt = (flags & FLAG_ENVELOPE) != 0 ? buffer.getLong() : 0;
+        Object value = null;
+        if ((flags & FLAG_NULL) == 0) {
+            InputStream in = new ByteArrayInputStream(bytes, buffer.position(), buffer.remaining());
+            if ((flags & FLAG_COMPRESSED) != 0) {
+                in = new InflaterInputStream(in);
+            }
+            try (in) {
+                value = reader.readValue(in);
+            }
+        }
+        return (flags & FLAG_ENVELOPE) != 0 ? new CacheEnvelope(value, expireAt) : value;
+    }
+
+    private static byte[] deflate(byte[] data) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(data.length / 2);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DeflaterOutputStream out = new DeflaterOutputStream(bos, deflater)) {
+            out.write(data);
+        } finally {
+            deflater.end();
+        }
+        return bos.toByteArray();
+    }
+}
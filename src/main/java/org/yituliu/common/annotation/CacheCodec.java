@@ -0,0 +1,17 @@
+package org.yituliu.common.annotation;
+
+/**
+ * @RedisCacheable缓存值在Redis中的编码格式
+ */
+public enum CacheCodec {
+
+    /**
+     * JSON，带@class类型信息，与RedisTemplate的默认序列化一致
+     */
+    JSON,
+
+    /**
+     * Smile二进制格式，不带类型信息，按方法返回类型解码，超过压缩阈值时压缩
+     */
+    SMILE
+}
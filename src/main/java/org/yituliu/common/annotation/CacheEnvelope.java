@@ -0,0 +1,51 @@
+package org.yituliu.common.annotation;
+
+/**
+ * 带逻辑过期时间的缓存值
+ * 空结果缓存和过期后仍可读取的缓存以此格式写入Redis，Redis过期时间比逻辑过期时间长，逻辑过期后的值作为旧值返回
+ */
+public class CacheEnvelope {
+
+    private Object value;  // 缓存值，空结果缓存时为null
+
+    private Long expireAt;  // 逻辑过期时间戳
+
+    public CacheEnvelope() {
+    }
+
+    public CacheEnvelope(Object value, Long expireAt) {
+        this.value = value;
+        this.expireAt = expireAt;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    public void setValue(Object value) {
+        this.value = value;
+    }
+
+    public Long getExpireAt() {
+        return expireAt;
+    }
+
+    public void setExpireAt(Long expireAt) {
+        this.expireAt = expireAt;
+    }
+
+    /**
+     * 是否已逻辑过期
+     */
+    public boolean expired() {
+        return expireAt != null && expireAt < System.currentTimeMillis();
+    }
+
+    @Override
+    public String toString() {
+        return "CacheEnvelope{" +
+                "value=" + value +
+                ", expireAt=" + expireAt +
+                '}';
+    }
+}
@@ -0,0 +1,115 @@
+package org.yituliu.common.annotation;
+
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @RedisCacheable缓存key生成器，每个注解方法创建一次
+ * keyExpression在创建时解析，SpEL表达式执行几次后编译为字节码；paramOrMethod的取值方法按参数类型缓存MethodHandle
+ * 每次调用只执行已编译的表达式或MethodHandle，不再反射查找方法
+ */
+class CacheKeyGenerator {
+
+    private static final SpelExpressionParser PARSER =
+            new SpelExpressionParser(new SpelParserConfiguration(SpelCompilerMode.MIXED, null));
+
+    private static final ParameterNameDiscoverer PARAMETER_NAME_DISCOVERER = new DefaultParameterNameDiscoverer();
+
+    private final String prefix;
+    private final Expression expression;
+    private final String[] parameterNames;
+    private final String paramOrMethod;
+
+    // 参数类型 → paramOrMethod对应的取值方法
+    private final Map<Class<?>, MethodHandle> keyMethods = new ConcurrentHashMap<>();
+
+    CacheKeyGenerator(Method method, RedisCacheable redisCacheable) {
+        this.prefix = redisCacheable.key();
+        this.paramOrMethod = redisCacheable.paramOrMethod();
+        if (redisCacheable.keyExpression().isEmpty()) {
+            this.expression = null;
+            this.parameterNames = null;
+        } else {
+            this.expression = PARSER.parseExpression(redisCacheable.keyExpression());
+            String[] names = PARAMETER_NAME_DISCOVERER.getParameterNames(method);
+            this.parameterNames = names != null ? names : new String[0];
+        }
+    }
+
+    /**
+     * 生成缓存key
+     *
+     * @param args 方法参数
+     * @return 完整的缓存key
+     */
+    String generate(Object[] args) {
+        if (expression != null) {
+            return prefix + "-" + evaluate(args);
+        }
+        if (args.length > 0) {
+            return prefix + generateCacheKey(args[0]);
+        }
+        return prefix;
+    }
+
+    private Object evaluate(Object[] args) {
+        StandardEvaluationContext context = new StandardEvaluationContext();
+        for (int i = 0; i < args.length; i++) {
+            context.setVariable("p" + i, args[i]);
+            if (i < parameterNames.length) {
+                context.setVariable(parameterNames[i], args[i]);
+            }
+        }
+        return expression.getValue(context);
+    }
+
+    /**
+     * 根据paramOrMethod和第一个参数生成key后缀。
+     *
+     * @param param 方法的第一个参数
+     * @return key后缀，param为null或paramOrMethod为空时返回空字符串
+     */
+    private String generateCacheKey(Object param) {
+        // 检查参数是否为null，如果为null则返回空字符串作为缓存键
+        if (param == null || paramOrMethod.isEmpty()) {
+            return "";
+        }
+        if ("param".equals(paramOrMethod)) {
+            return "-" + param;
+        }
+        MethodHandle keyMethod = keyMethods.computeIfAbsent(param.getClass(), this::findKeyMethod);
+        try {
+            Object keyValue = keyMethod.invoke(param);
+            // 将返回值转换为字符串形式，如果没有返回值（即返回null），则返回"-"
+            return keyValue != null ? "-" + keyValue : "-";
+        } catch (Throwable e) {
+            // 如果方法执行过程中抛出异常，抛出运行时异常
+            throw new RuntimeException("Failed to invoke the key method '" + paramOrMethod + "'.", e);
+        }
+    }
+
+    private MethodHandle findKeyMethod(Class<?> type) {
+        try {
+            Method method = type.getMethod(paramOrMethod);
+            return MethodHandles.publicLookup().unreflect(method)
+                    .asType(MethodType.methodType(Object.class, Object.class));
+        } catch (NoSuchMethodException e) {
+            // 如果没有找到指定的方法，抛出运行时异常
+            throw new RuntimeException("The specified key method '" + paramOrMethod + "' does not exist in the parameter class.", e);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Failed to invoke the key method '" + paramOrMethod + "'.", e);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.yituliu.common.annotation;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 缓存加载熔断器，每个缓存key前缀一个
+ * 连续失败达到阈值后熔断，熔断期间缓存未命中直接失败，不再请求后端；熔断到期后放行请求，成功则恢复，失败则再次熔断
+ */
+class CircuitBreaker {
+
+    private final int failureThreshold;
+    private final long openMillis;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long openUntil;
+
+    /**
+     * @param failureThreshold 触发熔断的连续失败次数
+     * @param openSeconds      熔断时间，单位秒
+     */
+    CircuitBreaker(int failureThreshold, int openSeconds) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openSeconds * 1000L;
+    }
+
+    /**
+     * 是否允许请求后端
+     */
+    boolean allowRequest() {
+        return System.currentTimeMillis() >= openUntil;
+    }
+
+    void recordSuccess() {
+        consecutiveFailures.set(0);
+    }
+
+    void recordFailure() {
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            openUntil = System.currentTimeMillis() + openMillis;
+        }
+    }
+}
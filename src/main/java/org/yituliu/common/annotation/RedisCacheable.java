@@ -16,6 +16,25 @@ import java.lang.annotation.Target;
  * paramOrMethod：此属性需要方法上有一个参数对象（且仅会调用第一个参数），同时有两种调用方式<br>
  *  ①填入param，会将第一个参数转为字符串拼接到key后，作为唯一标识<br>
  *  ②填入参数对象内部的方法名，调用参数内部对应方法，将返回的内容拼接到key后，作为唯一标识
+ * <p>
+ * keyExpression：SpEL表达式，可以引用任意参数（#p0、#p1或参数名），结果拼接到key后，设置后忽略paramOrMethod<br>
+ *  例如 "#p0.uid + '-' + #p1"
+ * <p>
+ * localCache：是否在Redis前增加进程内一级缓存，热点key不需要访问Redis<br>
+ *  localMaxSize：一级缓存最大条目数，localTimeout：一级缓存时间,单位s<br>
+ *  缓存更新时通过Redis发布订阅通知其他实例删除一级缓存
+ * <p>
+ * nullTimeout：方法返回null时缓存空结果的时间,单位s，0表示不缓存空结果
+ * <p>
+ * staleTimeout：缓存过期后仍可返回旧值的时间,单位s，期间返回旧值并由一个后台线程刷新，0表示不返回旧值
+ * <p>
+ * failureThreshold：同一key前缀的方法连续因后端不可用（IO、超时、数据访问异常）失败达到此次数后熔断openTimeout秒，熔断期间未命中缓存直接失败，0表示不熔断<br>
+ *  ServiceException等业务异常不计入熔断，方法对无效的输入应返回null或抛出ServiceException
+ * <p>
+ * codec：缓存值的编码格式，SMILE为二进制格式，不带类型信息，体积比JSON小；修改已有缓存的编码格式时旧缓存视为未命中<br>
+ *  compressThreshold：SMILE编码后超过此字节数时压缩，0表示不压缩
+ * <p>
+ * 缓存未命中时同一个key只有一个调用者执行方法，其他调用者等待并共享结果
  */
 @Retention(RetentionPolicy.RUNTIME)
 @Target({ElementType.METHOD})
@@ -26,4 +45,24 @@ public @interface RedisCacheable {
     int timeout() default 3600;
 
     String paramOrMethod() default "";
-}
\ No newline at end of file
+
+    String keyExpression() default "";
+
+    boolean localCache() default false;
+
+    int localMaxSize() default 1000;
+
+    int localTimeout() default 60;
+
+    int nullTimeout() default 0;
+
+    int staleTimeout() default 0;
+
+    int failureThreshold() default 0;
+
+    int openTimeout() default 30;
+
+    CacheCodec codec() default CacheCodec.JSON;
+
+    int compressThreshold() default 1024;
+}
@@ -2,6 +2,9 @@ package org.yituliu.common.exception;
 
 
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
@@ -17,6 +20,16 @@ public class GlobalExceptionHandler {
 
 
 
+	/**
+	 * 超出服务能力的请求返回429，Retry-After告知客户端多少秒后重试
+	 */
+	@ExceptionHandler(TooManyRequestsException.class)
+	public ResponseEntity<Result<Object>> handleTooManyRequestsException(TooManyRequestsException e) {
+		return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+				.header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+				.body(Result.failure(e.getResultCode()));
+	}
+
 	@ResponseBody
     @ExceptionHandler(Exception.class)
     public Object handleException(Exception e) {
@@ -0,0 +1,26 @@
+package org.yituliu.common.exception;
+
+
+import org.yituliu.common.enums.ResultCode;
+
+/**
+ * 请求超出服务能力时抛出，返回HTTP 429和Retry-After响应头
+ */
+public class TooManyRequestsException extends ServiceException {
+
+
+	private final long retryAfterSeconds;
+
+
+	public TooManyRequestsException(ResultCode resultCode, long retryAfterSeconds) {
+		super(resultCode);
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+
+	public long getRetryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+
+
+}
@@ -0,0 +1,47 @@
+package org.yituliu.common.limiter;
+
+/**
+ * 进程内令牌桶，Redis不可用时代替Redis令牌桶限流
+ */
+class LocalTokenBucket {
+
+    private final int capacity;
+    private final long periodMillis;
+    private double tokens;
+    private long lastRefillTime;
+
+    LocalTokenBucket(int capacity, int periodSeconds) {
+        this.capacity = capacity;
+        this.periodMillis = periodSeconds * 1000L;
+        this.tokens = capacity;
+        this.lastRefillTime = System.currentTimeMillis();
+    }
+
+    /**
+     * 尝试取出一个令牌
+     *
+     * @return 是否取到令牌
+     */
+    synchronized boolean tryAcquire() {
+        refill();
+        if (tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    /**
+     * 令牌桶是否已补满，补满的桶与新建的桶等价，可以删除
+     */
+    synchronized boolean isFull() {
+        refill();
+        return tokens >= capacity;
+    }
+
+    private void refill() {
+        long now = System.currentTimeMillis();
+        tokens = Math.min(capacity, tokens + (double) (now - lastRefillTime) * capacity / periodMillis);
+        lastRefillTime = now;
+    }
+}
@@ -0,0 +1,40 @@
+package org.yituliu.common.limiter;
+
+/**
+ * 一条限流规则：同一个key在period时间内最多通过capacity次请求，令牌按时间均匀补充
+ */
+public class RateLimit {
+
+    private final String key;  // 限流key，如 rate_limit:create_task:ip.127.0.0.1
+
+    private final int capacity;  // 桶容量，即period内允许的请求数
+
+    private final int periodSeconds;  // 补满令牌桶的时间，单位秒
+
+    public RateLimit(String key, int capacity, int periodSeconds) {
+        this.key = key;
+        this.capacity = capacity;
+        this.periodSeconds = periodSeconds;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getPeriodSeconds() {
+        return periodSeconds;
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimit{" +
+                "key='" + key + '\'' +
+                ", capacity=" + capacity +
+                ", periodSeconds=" + periodSeconds +
+                '}';
+    }
+}
@@ -0,0 +1,144 @@
+package org.yituliu.common.limiter;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+import org.yituliu.common.enums.ResultCode;
+import org.yituliu.common.exception.TooManyRequestsException;
+import org.yituliu.common.utils.LogUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 令牌桶限流器
+ * 一次请求的所有限流规则（如按token、按IP、全局）在一个Lua脚本中检查并扣减，只需一次EVALSHA，
+ * 任一规则不通过时所有规则都不扣减；令牌数和补充时间保存在Redis Hash中，并设置过期时间
+ * Redis不可用时改用进程内令牌桶，之后一段时间内不再访问Redis，限流不会因Redis故障阻塞请求
+ */
+@Component
+public class RateLimiter {
+
+    /**
+     * KEYS为各规则的令牌桶，ARGV[1]为当前时间戳，之后每条规则依次为容量和补满时间（毫秒）
+     * 返回0表示通过，否则返回第一个不通过的规则序号（从1开始）
+     */
+    private static final String TOKEN_BUCKET_SCRIPT =
+            "local now = tonumber(ARGV[1])\n" +
+            "local remaining = {}\n" +
+            "for i = 1, #KEYS do\n" +
+            "  local capacity = tonumber(ARGV[i * 2])\n" +
+            "  local period = tonumber(ARGV[i * 2 + 1])\n" +
+            "  local bucket = redis.call('HMGET', KEYS[i], 'tokens', 'ts')\n" +
+            "  local tokens = tonumber(bucket[1])\n" +
+            "  local ts = tonumber(bucket[2])\n" +
+            "  if tokens == nil then\n" +
+            "    tokens = capacity\n" +
+            "    ts = now\n" +
+            "  end\n" +
+            "  tokens = math.min(capacity, tokens + math.max(0, now - ts) * capacity / period)\n" +
+            "  if tokens < 1 then\n" +
+            "    return i\n" +
+            "  end\n" +
+            "  remaining[i] = tokens - 1\n" +
+            "end\n" +
+            "for i = 1, #KEYS do\n" +
+            "  redis.call('HSET', KEYS[i], 'tokens', tostring(remaining[i]), 'ts', ARGV[1])\n" +
+            "  redis.call('PEXPIRE', KEYS[i], ARGV[i * 2 + 1])\n" +
+            "end\n" +
+            "return 0";
+
+    /**
+     * Redis调用失败后改用进程内令牌桶的时间
+     */
+    private static final long REDIS_BACKOFF_MILLIS = 5_000L;
+
+    /**
+     * 进程内令牌桶数量上限，超过时删除已补满的令牌桶
+     */
+    private static final int MAX_LOCAL_BUCKETS = 10_000;
+
+    private static final DefaultRedisScript<Long> SCRIPT = new DefaultRedisScript<>(TOKEN_BUCKET_SCRIPT, Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final Map<String, LocalTokenBucket> localBuckets = new ConcurrentHashMap<>();
+
+    private volatile long redisRetryTime;
+
+    public RateLimiter(StringRedisTemplate stringRedisTemplate) {
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    /**
+     * 检查并扣减所有限流规则
+     *
+     * @param limits 限流规则
+     * @return 全部规则通过时返回true
+     */
+    public boolean tryAcquire(RateLimit... limits) {
+        return rejectedRule(limits) == 0;
+    }
+
+    /**
+     * 检查并扣减所有限流规则，不通过时抛出TooManyRequestsException，Retry-After为不通过的规则补充一个令牌的时间
+     *
+     * @param limits 限流规则
+     */
+    public void acquire(RateLimit... limits) {
+        int rejected = rejectedRule(limits);
+        if (rejected != 0) {
+            RateLimit limit = limits[rejected - 1];
+            long retryAfterSeconds = (limit.getPeriodSeconds() + limit.getCapacity() - 1) / limit.getCapacity();
+            throw new TooManyRequestsException(ResultCode.TOO_MANY_REQUESTS, Math.max(1, retryAfterSeconds));
+        }
+    }
+
+    /**
+     * @return 0表示全部通过，否则为第一个不通过的规则序号（从1开始）
+     */
+    private int rejectedRule(RateLimit[] limits) {
+        if (System.currentTimeMillis() >= redisRetryTime) {
+            try {
+                return tryAcquireRedis(limits);
+            } catch (Exception e) {
+                redisRetryTime = System.currentTimeMillis() + REDIS_BACKOFF_MILLIS;
+                LogUtils.error("Redis限流失败，改用进程内限流", e);
+            }
+        }
+        return tryAcquireLocal(limits);
+    }
+
+    private int tryAcquireRedis(RateLimit[] limits) {
+        List<String> keys = new ArrayList<>(limits.length);
+        Object[] args = new Object[limits.length * 2 + 1];
+        args[0] = String.valueOf(System.currentTimeMillis());
+        for (int i = 0; i < limits.length; i++) {
+            keys.add(limits[i].getKey());
+            args[i * 2 + 1] = String.valueOf(limits[i].getCapacity());
+            args[i * 2 + 2] = String.valueOf(limits[i].getPeriodSeconds() * 1000L);
+        }
+        Long rejected = stringRedisTemplate.execute(SCRIPT, keys, args);     // 脚本已缓存时使用EVALSHA
+        return rejected != null ? rejected.intValue() : 0;
+    }
+
+    /**
+     * 进程内限流，只在当前实例内生效；前面的规则已扣减的令牌在后面的规则不通过时不归还
+     */
+    private int tryAcquireLocal(RateLimit[] limits) {
+        if (localBuckets.size() > MAX_LOCAL_BUCKETS) {
+            localBuckets.values().removeIf(LocalTokenBucket::isFull);
+        }
+        for (int i = 0; i < limits.length; i++) {
+            RateLimit limit = limits[i];
+            LocalTokenBucket bucket = localBuckets.computeIfAbsent(limit.getKey(),
+                    k -> new LocalTokenBucket(limit.getCapacity(), limit.getPeriodSeconds()));
+            if (!bucket.tryAcquire()) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+}
@@ -4,9 +4,36 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 public class Gzip {
 
+    /**
+     * gzip 压缩数据
+     * @param data 原始字节数组
+     * @return 压缩后的字节数组
+     * @throws IOException 压缩失败时抛出
+     */
+    public static byte[] compress(byte[] data) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+        try (GZIPOutputStream gos = new GZIPOutputStream(bos)) {
+            gos.write(data);
+        }
+        return bos.toByteArray();
+    }
+
+    /**
+     * 解压 gzip 压缩的数据，直接返回字节，不经过字符串解码
+     * @param compressedData 压缩的字节数组
+     * @return 解压后的字节数组
+     * @throws IOException 解压失败时抛出
+     */
+    public static byte[] decompress(byte[] compressedData) throws IOException {
+        try (GZIPInputStream gis = new GZIPInputStream(new ByteArrayInputStream(compressedData), 8192)) {
+            return gis.readAllBytes();
+        }
+    }
+
     /**
      * 解压 gzip 压缩的数据
      * @param compressedData 压缩的字节数组
@@ -0,0 +1,139 @@
+package org.yituliu.common.utils;
+
+import org.apache.commons.codec.digest.MurmurHash3;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * HyperLogLog基数估计
+ * 使用 2^12 = 4096 个寄存器（序列化后4KB），标准误差约 1.04 / sqrt(4096) ≈ 1.6%
+ * 即约68%的估计值误差在±1.6%以内，约95%在±3.3%以内；基数较小时使用线性计数修正，结果接近精确值
+ * 多个HyperLogLog可无损合并，合并后等价于对所有元素的并集做估计，用于按任意时间范围统计UV
+ * offer方法使用CAS更新寄存器，可被多个线程并发调用
+ */
+public class HyperLogLog {
+
+    /**
+     * 寄存器索引位数
+     */
+    private static final int P = 12;
+
+    /**
+     * 寄存器数量
+     */
+    public static final int REGISTER_COUNT = 1 << P;
+
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTER_COUNT);
+
+    private static final VarHandle REGISTER = MethodHandles.arrayElementVarHandle(byte[].class);
+
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this.registers = new byte[REGISTER_COUNT];
+    }
+
+    private HyperLogLog(byte[] registers) {
+        this.registers = registers;
+    }
+
+    /**
+     * 从序列化的寄存器数组恢复
+     *
+     * @param bytes toBytes()的返回值
+     * @return HyperLogLog实例
+     */
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length != REGISTER_COUNT) {
+            throw new IllegalArgumentException("HyperLogLog寄存器长度错误");
+        }
+        return new HyperLogLog(bytes.clone());
+    }
+
+    /**
+     * 添加一个元素
+     *
+     * @param value 元素，例如IP地址
+     */
+    public void offer(String value) {
+        if (value == null) {
+            return;
+        }
+        offerHash(hash(value));
+    }
+
+    /**
+     * 计算元素的64位哈希值，同一元素需要加入多个HyperLogLog时只计算一次
+     *
+     * @param value 元素
+     * @return 64位哈希值
+     */
+    public static long hash(String value) {
+        return MurmurHash3.hash128x64(value.getBytes(StandardCharsets.UTF_8))[0];
+    }
+
+    /**
+     * 添加一个元素的64位哈希值
+     */
+    public void offerHash(long hash) {
+        int index = (int) (hash >>> (64 - P));                                // 高P位作为寄存器索引
+        long rest = (hash << P) | (1L << (P - 1));                            // 剩余位，补一个1避免全0
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        byte current;
+        do {
+            current = (byte) REGISTER.getVolatile(registers, index);
+            if (current >= rank) {
+                return;
+            }
+        } while (!REGISTER.compareAndSet(registers, index, current, rank));  // 只在变大时更新寄存器
+    }
+
+    /**
+     * 合并另一个HyperLogLog，合并后本实例表示两者元素的并集
+     */
+    public void merge(HyperLogLog other) {
+        for (int i = 0; i < REGISTER_COUNT; i++) {
+            byte rank = other.registers[i];
+            byte current;
+            do {
+                current = (byte) REGISTER.getVolatile(registers, i);
+                if (current >= rank) {
+                    break;
+                }
+            } while (!REGISTER.compareAndSet(registers, i, current, rank));
+        }
+    }
+
+    /**
+     * 估计基数（不重复元素个数）
+     */
+    public long cardinality() {
+        double sum = 0;
+        int zeros = 0;
+        for (int i = 0; i < REGISTER_COUNT; i++) {
+            byte rank = (byte) REGISTER.getVolatile(registers, i);
+            sum += 1.0 / (1L << rank);
+            if (rank == 0) {
+                zeros++;
+            }
+        }
+        double estimate = ALPHA * REGISTER_COUNT * REGISTER_COUNT / sum;
+        if (estimate <= 2.5 * REGISTER_COUNT && zeros > 0) {                  // 小基数使用线性计数修正
+            estimate = REGISTER_COUNT * Math.log((double) REGISTER_COUNT / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * 序列化为寄存器数组，用于持久化
+     */
+    public byte[] toBytes() {
+        byte[] bytes = new byte[REGISTER_COUNT];
+        for (int i = 0; i < REGISTER_COUNT; i++) {
+            bytes[i] = (byte) REGISTER.getVolatile(registers, i);
+        }
+        return bytes;
+    }
+}
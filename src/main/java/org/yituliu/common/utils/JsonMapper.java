@@ -6,6 +6,7 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -100,6 +101,16 @@ public class JsonMapper {
         }
     }
 
+    /**
+     * 获取指定类的ObjectReader，与parseObject使用相同的配置
+     * ObjectReader是线程安全的，调用方应缓存后重复使用，可直接从输入流或JsonParser读取
+     * @param clazz 目标类
+     * @return ObjectReader
+     */
+    public static ObjectReader readerFor(Class<?> clazz) {
+        return objectMapper.readerFor(clazz);
+    }
+
     /**
      * 从文件中读取JSON并转换为指定类的对象
      * @param file JSON文件
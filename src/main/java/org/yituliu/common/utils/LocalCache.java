@@ -0,0 +1,79 @@
+package org.yituliu.common.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 进程内有界缓存
+ * 每个条目有独立的过期时间；按访问顺序保存条目，超过上限时淘汰最久未访问的一个条目（LRU），每次写入的开销为O(1)
+ * 用于Redis缓存前的一级缓存，热点key读取不需要网络往返
+ */
+public class LocalCache {
+
+    private final long ttlMillis;
+    private final Map<String, Entry> entries;
+
+    /**
+     * @param maxSize    最大条目数
+     * @param ttlSeconds 条目存活时间，单位秒
+     */
+    public LocalCache(int maxSize, int ttlSeconds) {
+        this.ttlMillis = ttlSeconds * 1000L;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * 读取缓存
+     *
+     * @param key 缓存key
+     * @return 缓存值，不存在或已过期时返回null
+     */
+    public synchronized Object get(String key) {
+        Entry entry = entries.get(key);                                      // 按访问顺序保存，读取也会调整顺序
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expireAt < System.currentTimeMillis()) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * 写入缓存，值为null时不缓存
+     *
+     * @param key   缓存key
+     * @param value 缓存值
+     */
+    public synchronized void put(String key, Object value) {
+        if (value == null) {
+            return;
+        }
+        entries.put(key, new Entry(value, System.currentTimeMillis() + ttlMillis));
+    }
+
+    /**
+     * 删除缓存
+     *
+     * @param key 缓存key
+     */
+    public synchronized void remove(String key) {
+        entries.remove(key);
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final long expireAt;
+
+        private Entry(Object value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+}
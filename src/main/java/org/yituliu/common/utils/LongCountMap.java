@@ -0,0 +1,156 @@
+package org.yituliu.common.utils;
+
+import java.util.Arrays;
+
+/**
+ * long → long 计数Map，开放寻址实现
+ * 键和值都保存在基本类型数组中，累加时不产生装箱对象，适合按epoch小时/天等时间桶计数
+ * 不支持Long.MIN_VALUE作为键，非线程安全
+ */
+public class LongCountMap {
+
+    private static final long EMPTY_KEY = Long.MIN_VALUE;
+
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+
+    public LongCountMap() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize 预计的键数量
+     */
+    public LongCountMap(int expectedSize) {
+        allocate(Integer.highestOneBit(Math.max(4, expectedSize * 2) - 1) << 1);
+    }
+
+    /**
+     * 累加指定键的计数
+     *
+     * @param key   键
+     * @param delta 增加的计数
+     */
+    public void add(long key, long delta) {
+        if (key == EMPTY_KEY) {
+            throw new IllegalArgumentException("不支持Long.MIN_VALUE作为键");
+        }
+        int i = indexOf(key);
+        while (true) {
+            long k = keys[i];
+            if (k == key) {
+                values[i] += delta;
+                return;
+            }
+            if (k == EMPTY_KEY) {
+                keys[i] = key;
+                values[i] = delta;
+                if (++size * 2 > keys.length) {                                // 装载因子超过0.5时扩容
+                    allocateAndRehash();
+                }
+                return;
+            }
+            i = (i + 1) & mask;                                                // 线性探测下一个槽位
+        }
+    }
+
+    /**
+     * 获取指定键的计数，不存在时返回0
+     */
+    public long get(long key) {
+        int i = indexOf(key);
+        while (true) {
+            long k = keys[i];
+            if (k == key) {
+                return values[i];
+            }
+            if (k == EMPTY_KEY) {
+                return 0L;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    /**
+     * 是否包含指定键
+     */
+    public boolean containsKey(long key) {
+        int i = indexOf(key);
+        while (true) {
+            long k = keys[i];
+            if (k == key) {
+                return true;
+            }
+            if (k == EMPTY_KEY) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    /**
+     * 所有计数之和
+     */
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY_KEY) {
+                sum += values[i];
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * 遍历所有键值对，顺序不固定
+     */
+    public void forEach(EntryConsumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY_KEY) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private int indexOf(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;                                // 斐波那契散列，打散连续的时间桶
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        Arrays.fill(keys, EMPTY_KEY);
+        mask = capacity - 1;
+    }
+
+    private void allocateAndRehash() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY_KEY) {
+                add(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    /**
+     * 键值对回调
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(long key, long value);
+    }
+}
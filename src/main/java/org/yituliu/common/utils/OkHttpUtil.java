@@ -1,6 +1,7 @@
 package org.yituliu.common.utils;
 
 import okhttp3.*;
+import okhttp3.brotli.BrotliInterceptor;
 
 import java.io.IOException;
 import java.util.Map;
@@ -13,21 +14,32 @@ import java.util.concurrent.TimeUnit;
  */
 public class OkHttpUtil {
 
-    private static final OkHttpClient OK_HTTP_CLIENT = new OkHttpClient.Builder()
-            .connectTimeout(10, TimeUnit.SECONDS)  // 连接超时时间
-            .readTimeout(10, TimeUnit.SECONDS)     // 读取超时时间
-            .writeTimeout(10, TimeUnit.SECONDS)    // 写入超时时间
-            .addInterceptor(new Interceptor() {
-                @Override
-                public Response intercept(Chain chain) throws IOException {
-                    Request request = chain.request()
-                            .newBuilder()
-                            .removeHeader("Accept-Encoding") // 移除Accept-Encoding头，避免服务器返回压缩数据
-                            .build();
-                    return chain.proceed(request);
-                }
-            })
-            .build();
+    private static final OkHttpClient OK_HTTP_CLIENT = newBuilder().build();
+
+    /**
+     * 创建带默认配置的OkHttpClient.Builder
+     * 调用方传入的Accept-Encoding会被移除，由BrotliInterceptor协商br/gzip，响应体在读取时流式解压
+     * 连接池和Dispatcher使用OkHttp的默认值，需要单独配置的上游见OkHttpConfig
+     *
+     * @return OkHttpClient.Builder
+     */
+    public static OkHttpClient.Builder newBuilder() {
+        return new OkHttpClient.Builder()
+                .connectTimeout(10, TimeUnit.SECONDS)  // 连接超时时间
+                .readTimeout(10, TimeUnit.SECONDS)     // 读取超时时间
+                .writeTimeout(10, TimeUnit.SECONDS)    // 写入超时时间
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        Request request = chain.request()
+                                .newBuilder()
+                                .removeHeader("Accept-Encoding") // 移除调用方的Accept-Encoding，zstd等编码无法解压
+                                .build();
+                        return chain.proceed(request);
+                    }
+                })
+                .addInterceptor(BrotliInterceptor.INSTANCE);  // 请求br/gzip压缩的响应并透明解压
+    }
 
     /**
      * 发送带请求头的GET请求
@@ -0,0 +1,158 @@
+package org.yituliu.common.utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Space-Saving 高频元素（heavy hitters）草图
+ * 最多保存capacity个计数器，新元素在计数器已满时替换计数最小的元素并继承其计数
+ * 总计数为N时，真实出现次数大于 N / capacity 的元素一定保留在草图中，计数最多高估被替换元素的计数
+ * 适合从大量不重复的URL中找出访问量最高的候选URL，内存占用与不重复元素数量无关
+ * 所有方法线程安全
+ */
+public class SpaceSavingSketch {
+
+    private static final Comparator<Counter> COUNT_ORDER =
+            Comparator.<Counter>comparingLong(c -> c.count).thenComparing(c -> c.item);
+
+    private final int capacity;
+
+    private final Map<String, Counter> counters;
+
+    // 按计数升序排列，第一个元素即为计数最小的计数器
+    private final TreeSet<Counter> ordered = new TreeSet<>(COUNT_ORDER);
+
+    /**
+     * @param capacity 最多保存的计数器数量
+     */
+    public SpaceSavingSketch(int capacity) {
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    /**
+     * 累计一个元素
+     *
+     * @param item  元素，例如URL
+     * @param count 累计次数
+     */
+    public synchronized void offer(String item, long count) {
+        Counter counter = counters.get(item);
+        if (counter != null) {
+            ordered.remove(counter);                                          // 计数变化后重新排序
+            counter.count += count;
+            ordered.add(counter);
+            return;
+        }
+        if (counters.size() < capacity) {
+            add(new Counter(item, count, 0));
+            return;
+        }
+        Counter min = ordered.pollFirst();                                    // 替换计数最小的元素
+        counters.remove(min.item);
+        add(new Counter(item, min.count + count, min.count));
+    }
+
+    /**
+     * 合并另一个草图，合并后本草图近似表示两者元素的并集
+     * 只在一个草图中出现的元素，加上另一个草图的最小计数作为可能的遗漏次数
+     *
+     * @param other 另一个草图
+     */
+    public void merge(SpaceSavingSketch other) {
+        List<Counter> otherCounters = other.snapshot();                      // 先复制，避免同时持有两个草图的锁
+        long otherMin = other.minCount();
+        synchronized (this) {
+            long thisMin = minCount();
+            Map<String, Counter> merged = new HashMap<>(counters.size() + otherCounters.size());
+            for (Counter c : counters.values()) {
+                merged.put(c.item, new Counter(c.item, c.count + otherMin, c.error + otherMin));
+            }
+            for (Counter c : otherCounters) {
+                Counter existing = merged.get(c.item);
+                if (existing != null) {
+                    existing.count += c.count - otherMin;                     // 两个草图中都有，去掉先加上的最小计数
+                    existing.error += c.error - otherMin;
+                } else {
+                    merged.put(c.item, new Counter(c.item, c.count + thisMin, c.error + thisMin));
+                }
+            }
+
+            List<Counter> sorted = new ArrayList<>(merged.values());
+            sorted.sort(COUNT_ORDER.reversed());
+            counters.clear();
+            ordered.clear();
+            for (int i = 0; i < sorted.size() && i < capacity; i++) {       // 只保留计数最大的capacity个
+                add(sorted.get(i));
+            }
+        }
+    }
+
+    /**
+     * 计数最大的前n个元素，按计数降序排列
+     *
+     * @param n 返回的元素数量
+     * @return 元素列表
+     */
+    public synchronized List<String> topItems(int n) {
+        List<String> items = new ArrayList<>(Math.min(n, counters.size()));
+        for (Counter c : ordered.descendingSet()) {
+            if (items.size() >= n) {
+                break;
+            }
+            items.add(c.item);
+        }
+        return items;
+    }
+
+    /**
+     * 元素真实次数的上界：在草图中时为其计数，不在草图中时为最小计数
+     *
+     * @param item 元素
+     * @return 次数上界
+     */
+    public synchronized long upperBound(String item) {
+        Counter counter = counters.get(item);
+        return counter != null ? counter.count : minCount();
+    }
+
+    /**
+     * 计数器已满时的最小计数，未出现在草图中的元素的真实次数不超过该值
+     * 计数器未满时草图是精确的，返回0
+     */
+    public synchronized long minCount() {
+        return counters.size() < capacity || ordered.isEmpty() ? 0 : ordered.first().count;
+    }
+
+    private synchronized List<Counter> snapshot() {
+        List<Counter> copy = new ArrayList<>(counters.size());
+        for (Counter c : counters.values()) {
+            copy.add(new Counter(c.item, c.count, c.error));
+        }
+        return copy;
+    }
+
+    private void add(Counter counter) {
+        counters.put(counter.item, counter);
+        ordered.add(counter);
+    }
+
+    /**
+     * 计数器
+     */
+    private static final class Counter {
+        private final String item;
+        private long count;
+        private long error;                                                   // 继承的计数，真实次数 >= count - error
+
+        private Counter(String item, long count, long error) {
+            this.item = item;
+            this.count = count;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.yituliu.common.utils;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * 时间桶工具类
+ * 按固定时区（Asia/Shanghai，与数据库连接的serverTimezone一致）把时间戳划分为epoch小时/epoch天
+ * 计算只使用long运算，不创建Date、Calendar或字符串；标签在输出时使用线程安全的DateTimeFormatter格式化
+ */
+public class TimeBucketUtil {
+
+    /**
+     * 统计使用的固定时区
+     */
+    public static final ZoneId ZONE = ZoneId.of("Asia/Shanghai");
+
+    public static final long ONE_MINUTE = 60 * 1000L;
+
+    public static final long ONE_HOUR = 60 * ONE_MINUTE;
+
+    private static final DateTimeFormatter MINUTE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final DateTimeFormatter HOUR_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:00");
+    private static final DateTimeFormatter DAY_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+    private TimeBucketUtil() {
+    }
+
+    /**
+     * 时间戳所在的epoch分钟（时间戳 / 1分钟，向下取整）
+     */
+    public static long toEpochMinute(long timeMillis) {
+        return Math.floorDiv(timeMillis, ONE_MINUTE);
+    }
+
+    /**
+     * 时间戳所在的epoch小时（时间戳 / 1小时，向下取整）
+     * 统计时区为整小时偏移，epoch小时的边界即为本地整点
+     */
+    public static long toEpochHour(long timeMillis) {
+        return Math.floorDiv(timeMillis, ONE_HOUR);
+    }
+
+    /**
+     * epoch小时对应的整点时间戳
+     */
+    public static long toMillis(long epochHour) {
+        return epochHour * ONE_HOUR;
+    }
+
+    /**
+     * 时间戳向下对齐到整点
+     */
+    public static long truncateToHour(long timeMillis) {
+        return timeMillis - Math.floorMod(timeMillis, ONE_HOUR);
+    }
+
+    /**
+     * epoch小时在统计时区下所在的epoch天（LocalDate.toEpochDay）
+     */
+    public static long epochHourToEpochDay(long epochHour) {
+        return LocalDate.ofInstant(Instant.ofEpochMilli(toMillis(epochHour)), ZONE).toEpochDay();
+    }
+
+    /**
+     * epoch天在统计时区下的第一个epoch小时（当天0点）
+     */
+    public static long epochDayToEpochHour(long epochDay) {
+        return toEpochHour(LocalDate.ofEpochDay(epochDay).atStartOfDay(ZONE).toInstant().toEpochMilli());
+    }
+
+    /**
+     * 时间戳在统计时区下所在的epoch天
+     */
+    public static long toEpochDay(long timeMillis) {
+        return LocalDate.ofInstant(Instant.ofEpochMilli(timeMillis), ZONE).toEpochDay();
+    }
+
+    /**
+     * 格式化epoch分钟，例如 2026-05-12 10:35
+     */
+    public static String formatMinute(long epochMinute) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMinute * ONE_MINUTE), ZONE).format(MINUTE_FORMATTER);
+    }
+
+    /**
+     * 格式化epoch小时，例如 2026-05-12 10:00
+     */
+    public static String formatHour(long epochHour) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(toMillis(epochHour)), ZONE).format(HOUR_FORMATTER);
+    }
+
+    /**
+     * 格式化epoch天，例如 2026-05-12
+     */
+    public static String formatDay(long epochDay) {
+        return LocalDate.ofEpochDay(epochDay).format(DAY_FORMATTER);
+    }
+}
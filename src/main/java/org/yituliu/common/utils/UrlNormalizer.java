@@ -0,0 +1,91 @@
+package org.yituliu.common.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * URL标准化工具类
+ * 写入访问日志时把同一页面的不同写法统一为一个标准URL，避免统计结果被拆散
+ * - 去掉#之后的锚点
+ * - 去掉结尾斜杠（根路径"/"除外）
+ * - 去掉推广、防缓存等每次访问都可能不同的查询参数，其余参数按名称排序
+ * 例如 "/tools/essence-calculator/?utm_source=bili&b=2&a=1#top" → "/tools/essence-calculator?a=1&b=2"
+ */
+public class UrlNormalizer {
+
+    /**
+     * URL为空时使用的标准URL
+     */
+    public static final String UNKNOWN = "Unknown";
+
+    /**
+     * 标准URL的最大长度，与url_dict.url列长度一致
+     */
+    private static final int MAX_LENGTH = 500;
+
+    /**
+     * 需要去掉的查询参数
+     */
+    private static final Set<String> VOLATILE_PARAMS = Set.of(
+            "spm", "from", "share_source", "share_medium", "share_from", "vd_source",
+            "fbclid", "gclid", "msclkid", "_t", "t", "ts", "timestamp", "_");
+
+    private UrlNormalizer() {
+    }
+
+    /**
+     * 标准化URL
+     *
+     * @param url 原始URL
+     * @return 标准URL，原始URL为空时返回"Unknown"
+     */
+    public static String normalize(String url) {
+        if (url == null || url.isBlank()) {
+            return UNKNOWN;
+        }
+        String value = url.trim();
+
+        int hashIndex = value.indexOf('#');
+        if (hashIndex >= 0) {
+            value = value.substring(0, hashIndex);                           // 去掉锚点
+        }
+
+        String query = null;
+        int queryIndex = value.indexOf('?');
+        if (queryIndex >= 0) {
+            query = value.substring(queryIndex + 1);
+            value = value.substring(0, queryIndex);
+        }
+
+        int end = value.length();
+        while (end > 1 && value.charAt(end - 1) == '/') {                    // 长度>1 避免把根路径"/"也去掉
+            end--;
+        }
+        String path = end == 0 ? "/" : value.substring(0, end);
+
+        String normalizedQuery = query == null ? "" : normalizeQuery(query);
+        String normalized = normalizedQuery.isEmpty() ? path : path + "?" + normalizedQuery;
+        return normalized.length() > MAX_LENGTH ? normalized.substring(0, MAX_LENGTH) : normalized;
+    }
+
+    /**
+     * 去掉易变参数和空参数，其余参数按原文排序后拼接
+     */
+    private static String normalizeQuery(String query) {
+        List<String> params = new ArrayList<>();
+        for (String param : query.split("&")) {
+            if (param.isEmpty()) {
+                continue;
+            }
+            int eqIndex = param.indexOf('=');
+            String name = eqIndex >= 0 ? param.substring(0, eqIndex) : param;
+            if (name.startsWith("utm_") || VOLATILE_PARAMS.contains(name)) {
+                continue;
+            }
+            params.add(param);
+        }
+        params.sort(null);                                                    // 参数顺序不同视为同一URL
+        return String.join("&", params);
+    }
+}
@@ -0,0 +1,53 @@
+package org.yituliu.config;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.yituliu.common.utils.OkHttpUtil;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上游接口的OkHttpClient配置
+ * 每个上游主机一个客户端，连接池和Dispatcher按该主机的并发量单独设置，导入高峰时不与其他请求争用
+ */
+@Configuration
+public class OkHttpConfig {
+
+    /**
+     * 终末地寻访记录接口（ef-webview.hypergryph.com）的客户端
+     *
+     * @param maxIdleConnections 连接池保留的空闲连接数
+     * @param keepAliveSeconds   空闲连接保留时间，单位秒
+     * @param maxRequests        同时进行的请求总数
+     * @param maxRequestsPerHost 同一主机同时进行的请求数
+     * @param timeoutSeconds     连接、读取、写入超时时间，单位秒
+     * @param http2              是否启用HTTP/2，启用后同一主机的请求在一个连接上多路复用
+     */
+    @Bean(name = "recordApiOkHttpClient")
+    public OkHttpClient recordApiOkHttpClient(
+            @Value("${http-client.record-api.max-idle-connections:16}") int maxIdleConnections,
+            @Value("${http-client.record-api.keep-alive-seconds:300}") long keepAliveSeconds,
+            @Value("${http-client.record-api.max-requests:64}") int maxRequests,
+            @Value("${http-client.record-api.max-requests-per-host:16}") int maxRequestsPerHost,
+            @Value("${http-client.record-api.timeout-seconds:10}") long timeoutSeconds,
+            @Value("${http-client.record-api.http2:true}") boolean http2) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+
+        return OkHttpUtil.newBuilder()
+                .connectTimeout(timeoutSeconds, TimeUnit.SECONDS)
+                .readTimeout(timeoutSeconds, TimeUnit.SECONDS)
+                .writeTimeout(timeoutSeconds, TimeUnit.SECONDS)
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveSeconds, TimeUnit.SECONDS))
+                .dispatcher(dispatcher)
+                .protocols(http2 ? List.of(Protocol.HTTP_2, Protocol.HTTP_1_1) : List.of(Protocol.HTTP_1_1))
+                .build();
+    }
+}
@@ -9,6 +9,8 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.yituliu.common.utils.Result;
 import org.yituliu.entity.dto.AccessLogDTO;
+import org.yituliu.entity.vo.AccessLogSummaryVO;
+import org.yituliu.entity.vo.RealtimeTrafficVO;
 import org.yituliu.entity.vo.UrlPeriodDataVO;
 import org.yituliu.entity.vo.UrlTotalVisitVO;
 import org.yituliu.entity.vo.UrlVisitGroupVO;
@@ -42,18 +44,34 @@ public class AdminController {
         return Result.success();
     }
 
+    /**
+     * 扫描原始日志重建URL小时预聚合数据，用于回填上线前的历史数据，可重复执行
+     * 时间范围最大不超过30天，不包含最近一小时；全局每分钟最多调用一次，正在重建时返回429
+     * @param start 开始时间（格式 yyyy-MM-dd HH:mm:ss）
+     * @param end   结束时间（格式 yyyy-MM-dd HH:mm:ss）
+     * @return 写入的行数
+     */
+    @PostMapping("/access-log/url-hourly/rebuild")
+    public Result<Integer> rebuildUrlHourly(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date start,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date end) {
+        return Result.success(adminService.rebuildUrlHourly(start, end));
+    }
+
     /**
      * 获取指定时间范围内每个URL每天的访问次数统计（按URL分组）
      * 返回Top 30 URL，时间范围最大不超过30天
      * @param start 开始时间（格式 yyyy-MM-dd HH:mm:ss）
      * @param end   结束时间（格式 yyyy-MM-dd HH:mm:ss）
+     * @param exact 是否扫描原始日志精确统计，默认读取URL小时预聚合数据
      * @return URL分组访问量列表
      */
     @GetMapping("/access-log/daily")
     public Result<List<UrlVisitGroupVO>> getUrlDailyVisits(
             @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date start,
-            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date end) {
-        List<UrlVisitGroupVO> visits = adminService.getUrlDailyVisits(start, end);
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date end,
+            @RequestParam(defaultValue = "false") boolean exact) {
+        List<UrlVisitGroupVO> visits = adminService.getUrlDailyVisits(start, end, exact);
         return Result.success(visits);
     }
 
@@ -62,13 +80,15 @@ public class AdminController {
      * Top 15 单独列出，其余合并为"其他"，第一项固定为"访问总和"，时间范围最大不超过30天
      * @param start 开始时间（格式 yyyy-MM-dd HH:mm:ss）
      * @param end   结束时间（格式 yyyy-MM-dd HH:mm:ss）
+     * @param exact 是否扫描原始日志精确统计，默认读取URL小时预聚合数据
      * @return URL总访问量列表
      */
     @GetMapping("/access-log/total")
     public Result<List<UrlTotalVisitVO>> getUrlTotalVisits(
             @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date start,
-            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date end) {
-        List<UrlTotalVisitVO> visits = adminService.getUrlTotalVisits(start, end);
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date end,
+            @RequestParam(defaultValue = "false") boolean exact) {
+        List<UrlTotalVisitVO> visits = adminService.getUrlTotalVisits(start, end, exact);
         return Result.success(visits);
     }
 
@@ -77,13 +97,15 @@ public class AdminController {
      * 时间范围最大不超过30天
      * @param start 开始时间（格式 yyyy-MM-dd HH:mm:ss）
      * @param end   结束时间（格式 yyyy-MM-dd HH:mm:ss）
+     * @param exact 是否扫描原始日志精确统计，默认读取URL小时预聚合数据
      * @return 每小时总访问量列表
      */
     @GetMapping("/access-log/hourly-total")
     public Result<List<UrlPeriodDataVO>> getHourlyTotalVisits(
             @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date start,
-            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date end) {
-        List<UrlPeriodDataVO> visits = adminService.getHourlyTotalVisits(start, end);
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date end,
+            @RequestParam(defaultValue = "false") boolean exact) {
+        List<UrlPeriodDataVO> visits = adminService.getHourlyTotalVisits(start, end, exact);
         return Result.success(visits);
     }
 
@@ -92,13 +114,62 @@ public class AdminController {
      * 时间范围最大不超过30天
      * @param start 开始时间（格式 yyyy-MM-dd HH:mm:ss）
      * @param end   结束时间（格式 yyyy-MM-dd HH:mm:ss）
+     * @param exact 是否扫描原始日志精确统计，默认读取URL小时预聚合数据
      * @return 每日总访问量列表
      */
     @GetMapping("/access-log/daily-total")
     public Result<List<UrlPeriodDataVO>> getDailyTotalVisits(
             @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date start,
-            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date end) {
-        List<UrlPeriodDataVO> visits = adminService.getDailyTotalVisits(start, end);
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date end,
+            @RequestParam(defaultValue = "false") boolean exact) {
+        List<UrlPeriodDataVO> visits = adminService.getDailyTotalVisits(start, end, exact);
         return Result.success(visits);
     }
+
+    /**
+     * 一次性获取后台看板的全部访问量统计
+     * 包含URL每日访问量、URL总访问量、每小时总访问量、每日总访问量，只遍历一次数据，时间范围最大不超过30天
+     * @param start 开始时间（格式 yyyy-MM-dd HH:mm:ss）
+     * @param end   结束时间（格式 yyyy-MM-dd HH:mm:ss）
+     * @param exact 是否扫描原始日志精确统计，默认读取URL小时预聚合数据
+     * @return 访问量汇总统计
+     */
+    @GetMapping("/access-log/summary")
+    public Result<AccessLogSummaryVO> getAccessLogSummary(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date start,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date end,
+            @RequestParam(defaultValue = "false") boolean exact) {
+        AccessLogSummaryVO summary = adminService.getAccessLogSummary(start, end, exact);
+        return Result.success(summary);
+    }
+
+    /**
+     * 估计指定时间范围内的独立访客数(UV)
+     * 合并每小时的HyperLogLog得到，标准误差约1.6%，按整点小时计算，时间范围最大不超过30天
+     * @param start 开始时间（格式 yyyy-MM-dd HH:mm:ss）
+     * @param end   结束时间（格式 yyyy-MM-dd HH:mm:ss）
+     * @return 独立访客数估计值
+     */
+    @GetMapping("/access-log/uv")
+    public Result<Long> getUniqueVisitors(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date start,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date end) {
+        Long uniqueVisitors = adminService.getUniqueVisitors(start, end);
+        return Result.success(uniqueVisitors);
+    }
+
+    /**
+     * 获取实时流量统计
+     * 最近N分钟（按分钟）和最近N小时（按小时）的PV、UV、访问量最高的URL，直接读取内存中的滑动窗口
+     * @param minutes 最近分钟数，1-60，默认60
+     * @param hours   最近小时数，1-24，默认24
+     * @return 实时流量统计
+     */
+    @GetMapping("/access-log/realtime")
+    public Result<RealtimeTrafficVO> getRealtimeTraffic(
+            @RequestParam(defaultValue = "60") int minutes,
+            @RequestParam(defaultValue = "24") int hours) {
+        RealtimeTrafficVO realtime = adminService.getRealtimeTraffic(minutes, hours);
+        return Result.success(realtime);
+    }
 }
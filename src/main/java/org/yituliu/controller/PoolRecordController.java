@@ -1,16 +1,22 @@
 package org.yituliu.controller;
 
 import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.yituliu.common.utils.Gzip;
 import org.yituliu.common.utils.Result;
 import org.yituliu.entity.po.EndministratorInfo;
-import org.yituliu.entity.vo.PoolRecordVO;
+import org.yituliu.entity.vo.PoolRecordTaskVO;
 import org.yituliu.service.CharacterPoolRecordService;
 import org.yituliu.service.PoolRecordTaskService;
 
+import java.io.IOException;
+
 
 @RestController
 public class PoolRecordController {
@@ -29,9 +35,8 @@ public class PoolRecordController {
 
 
     @PostMapping("/pool-record/create-task")
-    public Result<String> createTask(HttpServletRequest httpServletRequest, @RequestParam String hgToken) {
-        String taskId = poolRecordTaskService.createTask(httpServletRequest, hgToken);
-        return Result.success(taskId);
+    public Result<PoolRecordTaskVO> createTask(HttpServletRequest httpServletRequest, @RequestParam String hgToken) {
+        return Result.success(poolRecordTaskService.createTask(httpServletRequest, hgToken));
     }
 
     @GetMapping("/pool-record/check-task")
@@ -43,9 +48,57 @@ public class PoolRecordController {
 
 
 
+    /**
+     * 获取玩家寻访记录，响应体为缓存中已序列化并压缩的JSON
+     * 客户端支持gzip时直接返回压缩数据，否则解压后返回
+     */
     @GetMapping("/pool-record/character/list")
-    public Result<PoolRecordVO> getCharacterPoolRecordData(HttpServletRequest httpServletRequest, @RequestParam String taskId) {
+    public ResponseEntity<byte[]> getCharacterPoolRecordData(HttpServletRequest httpServletRequest, @RequestParam String taskId) throws IOException {
+        byte[] compressed = poolRecordTaskService.getCharacterPoolRecordData(httpServletRequest, taskId);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (acceptsGzip(httpServletRequest.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(compressed);
+        }
+        return response.body(Gzip.decompress(compressed));
+    }
 
-        return Result.success( poolRecordTaskService.getCharacterPoolRecordData(httpServletRequest, taskId));
+    /**
+     * 按Accept-Encoding请求头判断客户端是否接受gzip编码的响应
+     * 按RFC 9110解析q值：gzip（或x-gzip）的q值大于0时接受；没有单独列出gzip时取"*"的q值；q=0表示拒绝
+     * @param acceptEncoding Accept-Encoding请求头，可以为null
+     * @return 是否接受gzip
+     */
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzipQuality = null;
+        Double wildcardQuality = null;
+        for (String element : acceptEncoding.split(",")) {
+            String[] parts = element.split(";");
+            String coding = parts[0].trim();
+            double quality = 1.0;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.length() > 2 && (param.charAt(0) == 'q' || param.charAt(0) == 'Q') && param.charAt(1) == '=') {
+                    try {
+                        quality = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0;                                         // 无法解析的q值按拒绝处理
+                    }
+                }
+            }
+            if (coding.equalsIgnoreCase("gzip") || coding.equalsIgnoreCase("x-gzip")) {
+                gzipQuality = gzipQuality == null ? quality : Math.max(gzipQuality, quality);
+            } else if (coding.equals("*")) {
+                wildcardQuality = quality;
+            }
+        }
+        if (gzipQuality != null) {
+            return gzipQuality > 0;
+        }
+        return wildcardQuality != null && wildcardQuality > 0;
     }
 }
@@ -0,0 +1,72 @@
+package org.yituliu.entity.dto.pool.record;
+
+import java.util.List;
+
+/**
+ * 寻访记录接口的一页结果，记录直接解析为持久化对象
+ *
+ * @param <T> 记录类型，CharacterPoolRecord或WeaponPoolRecord
+ */
+public class PoolRecordPageDTO<T> {
+    /**
+     * 响应码
+     */
+    private Integer code;
+
+    /**
+     * 响应消息
+     */
+    private String msg;
+
+    /**
+     * 本页的寻访记录
+     */
+    private List<T> list;
+
+    /**
+     * 是否还有更多数据
+     */
+    private Boolean hasMore;
+
+    public PoolRecordPageDTO() {
+    }
+
+    public PoolRecordPageDTO(Integer code, String msg, List<T> list, Boolean hasMore) {
+        this.code = code;
+        this.msg = msg;
+        this.list = list;
+        this.hasMore = hasMore;
+    }
+
+    public Integer getCode() {
+        return code;
+    }
+
+    public void setCode(Integer code) {
+        this.code = code;
+    }
+
+    public String getMsg() {
+        return msg;
+    }
+
+    public void setMsg(String msg) {
+        this.msg = msg;
+    }
+
+    public List<T> getList() {
+        return list;
+    }
+
+    public void setList(List<T> list) {
+        this.list = list;
+    }
+
+    public Boolean getHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(Boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+}
@@ -11,6 +11,7 @@ public class AccessLog {
     @TableId("id")
     private Long id;
     private String url;
+    private Integer urlId;
     private String ip;
     private String region;
     private String referer;
@@ -52,6 +53,14 @@ public class AccessLog {
         this.url = url;
     }
 
+    public Integer getUrlId() {
+        return urlId;
+    }
+
+    public void setUrlId(Integer urlId) {
+        this.urlId = urlId;
+    }
+
     public String getIp() {
         return ip;
     }
@@ -121,6 +130,7 @@ public class AccessLog {
         return "AccessLog{" +
                 "id=" + id +
                 ", url='" + url + '\'' +
+                ", urlId=" + urlId +
                 ", ip='" + ip + '\'' +
                 ", region='" + region + '\'' +
                 ", referer='" + referer + '\'' +
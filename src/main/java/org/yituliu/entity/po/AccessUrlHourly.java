@@ -0,0 +1,71 @@
+package org.yituliu.entity.po;
+
+import com.baomidou.mybatisplus.annotation.TableName;
+
+import java.util.Date;
+
+/**
+ * URL小时访问量预聚合实体类
+ * 对应数据库表：access_url_hourly，主键为(url, hour)
+ * 写入访问日志时在内存中累加，定时批量upsert到数据库
+ */
+@TableName("access_url_hourly")
+public class AccessUrlHourly {
+
+    /**
+     * 标准化后的访问URL
+     */
+    private String url;
+
+    /**
+     * 整点小时，例如 2026-05-12 10:00:00
+     */
+    private Date hour;
+
+    /**
+     * 该小时内的访问次数
+     */
+    private Long pv;
+
+    public AccessUrlHourly() {
+    }
+
+    public AccessUrlHourly(String url, Date hour, Long pv) {
+        this.url = url;
+        this.hour = hour;
+        this.pv = pv;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public Date getHour() {
+        return hour;
+    }
+
+    public void setHour(Date hour) {
+        this.hour = hour;
+    }
+
+    public Long getPv() {
+        return pv;
+    }
+
+    public void setPv(Long pv) {
+        this.pv = pv;
+    }
+
+    @Override
+    public String toString() {
+        return "AccessUrlHourly{" +
+                "url='" + url + '\'' +
+                ", hour=" + hour +
+                ", pv=" + pv +
+                '}';
+    }
+}
@@ -0,0 +1,132 @@
+package org.yituliu.entity.po;
+
+import com.baomidou.mybatisplus.annotation.TableName;
+
+import java.util.Date;
+
+/**
+ * 玩家寻访记录导入状态实体类
+ * 对应数据库表：player_import_state，主键(role_id, pool_type)
+ * 导入开始时按主键读取，代替对历史记录的聚合查询；与寻访记录在同一事务中更新
+ */
+@TableName("player_import_state")
+public class PlayerImportState {
+
+    /**
+     * 玩家roleId
+     */
+    private String roleId;
+
+    /**
+     * 卡池类型，干员卡池为E_CharacterGachaPoolType_*，武器卡池为Weapon
+     */
+    private String poolType;
+
+    /**
+     * 已导入记录的最大seq_id
+     */
+    private Integer maxSeqId;
+
+    /**
+     * 上次导入时第一页第一条记录的seq_id
+     */
+    private Integer headSeqId;
+
+    /**
+     * 已导入的记录数
+     */
+    private Integer recordCount;
+
+    /**
+     * 新手池是否已抽完，抽完后不再请求新手池
+     */
+    private Boolean beginnerComplete;
+
+    /**
+     * 上次导入时间
+     */
+    private Date lastImportTime;
+
+    public PlayerImportState() {
+    }
+
+    public PlayerImportState(String roleId, String poolType, Integer maxSeqId, Integer headSeqId,
+                             Integer recordCount, Boolean beginnerComplete, Date lastImportTime) {
+        this.roleId = roleId;
+        this.poolType = poolType;
+        this.maxSeqId = maxSeqId;
+        this.headSeqId = headSeqId;
+        this.recordCount = recordCount;
+        this.beginnerComplete = beginnerComplete;
+        this.lastImportTime = lastImportTime;
+    }
+
+    public String getRoleId() {
+        return roleId;
+    }
+
+    public void setRoleId(String roleId) {
+        this.roleId = roleId;
+    }
+
+    public String getPoolType() {
+        return poolType;
+    }
+
+    public void setPoolType(String poolType) {
+        this.poolType = poolType;
+    }
+
+    public Integer getMaxSeqId() {
+        return maxSeqId;
+    }
+
+    public void setMaxSeqId(Integer maxSeqId) {
+        this.maxSeqId = maxSeqId;
+    }
+
+    public Integer getHeadSeqId() {
+        return headSeqId;
+    }
+
+    public void setHeadSeqId(Integer headSeqId) {
+        this.headSeqId = headSeqId;
+    }
+
+    public Integer getRecordCount() {
+        return recordCount;
+    }
+
+    public void setRecordCount(Integer recordCount) {
+        this.recordCount = recordCount;
+    }
+
+    public Boolean getBeginnerComplete() {
+        return beginnerComplete;
+    }
+
+    public void setBeginnerComplete(Boolean beginnerComplete) {
+        this.beginnerComplete = beginnerComplete;
+    }
+
+    public Date getLastImportTime() {
+        return lastImportTime;
+    }
+
+    public void setLastImportTime(Date lastImportTime) {
+        this.lastImportTime = lastImportTime;
+    }
+
+    @Override
+    public String toString() {
+        return "PlayerImportState{" +
+                "roleId='" + roleId + '\'' +
+                ", poolType='" + poolType + '\'' +
+                ", maxSeqId=" + maxSeqId +
+                ", headSeqId=" + headSeqId +
+                ", recordCount=" + recordCount +
+                ", beginnerComplete=" + beginnerComplete +
+                ", lastImportTime=" + lastImportTime +
+                '}';
+    }
+}
@@ -16,6 +16,7 @@ public class PlayerPoolRecordTask {
     private Boolean startFlag;
     private Date createTime;
     private Date updateTime;
+    private Integer estimatedCost;
 
     public PlayerPoolRecordTask() {
     }
@@ -86,6 +87,14 @@ public class PlayerPoolRecordTask {
         this.updateTime = updateTime;
     }
 
+    public Integer getEstimatedCost() {
+        return estimatedCost;
+    }
+
+    public void setEstimatedCost(Integer estimatedCost) {
+        this.estimatedCost = estimatedCost;
+    }
+
     @Override
     public String toString() {
         return "PlayerPoolRecordTask{" +
@@ -96,6 +105,7 @@ public class PlayerPoolRecordTask {
                 ", startFlag=" + startFlag +
                 ", createTime=" + createTime +
                 ", updateTime=" + updateTime +
+                ", estimatedCost=" + estimatedCost +
                 '}';
     }
 }
@@ -47,6 +47,11 @@ public class TrafficStats {
      */
     private Date createTime;
 
+    /**
+     * 独立访客的HyperLogLog寄存器（4KB），用于按任意时间范围合并统计UV
+     */
+    private byte[] uvSketch;
+
     /**
      * 无参构造函数
      */
@@ -120,6 +125,14 @@ public class TrafficStats {
         this.createTime = createTime;
     }
 
+    public byte[] getUvSketch() {
+        return uvSketch;
+    }
+
+    public void setUvSketch(byte[] uvSketch) {
+        this.uvSketch = uvSketch;
+    }
+
     @Override
     public String toString() {
         return "TrafficStats{" +
@@ -0,0 +1,55 @@
+package org.yituliu.entity.po;
+
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+
+/**
+ * URL字典实体类
+ * 每个标准化后的URL对应一个整数ID，access_log只保存URL ID
+ */
+@TableName("url_dict")
+public class UrlDict {
+
+    /**
+     * URL ID
+     */
+    @TableId
+    private Integer id;
+
+    /**
+     * 标准化后的URL
+     */
+    private String url;
+
+    public UrlDict() {
+    }
+
+    public UrlDict(Integer id, String url) {
+        this.id = id;
+        this.url = url;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    @Override
+    public String toString() {
+        return "UrlDict{" +
+                "id=" + id +
+                ", url='" + url + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,67 @@
+package org.yituliu.entity.vo;
+
+import java.util.List;
+
+/**
+ * 访问量汇总统计VO
+ * 一次遍历得到的后台看板全部统计数据，与四个单独统计接口的返回结果一致
+ */
+public class AccessLogSummaryVO {
+    private List<UrlVisitGroupVO> urlDailyVisits;
+    private List<UrlTotalVisitVO> urlTotalVisits;
+    private List<UrlPeriodDataVO> hourlyTotalVisits;
+    private List<UrlPeriodDataVO> dailyTotalVisits;
+
+    public AccessLogSummaryVO() {
+    }
+
+    public AccessLogSummaryVO(List<UrlVisitGroupVO> urlDailyVisits, List<UrlTotalVisitVO> urlTotalVisits,
+                              List<UrlPeriodDataVO> hourlyTotalVisits, List<UrlPeriodDataVO> dailyTotalVisits) {
+        this.urlDailyVisits = urlDailyVisits;
+        this.urlTotalVisits = urlTotalVisits;
+        this.hourlyTotalVisits = hourlyTotalVisits;
+        this.dailyTotalVisits = dailyTotalVisits;
+    }
+
+    public List<UrlVisitGroupVO> getUrlDailyVisits() {
+        return urlDailyVisits;
+    }
+
+    public void setUrlDailyVisits(List<UrlVisitGroupVO> urlDailyVisits) {
+        this.urlDailyVisits = urlDailyVisits;
+    }
+
+    public List<UrlTotalVisitVO> getUrlTotalVisits() {
+        return urlTotalVisits;
+    }
+
+    public void setUrlTotalVisits(List<UrlTotalVisitVO> urlTotalVisits) {
+        this.urlTotalVisits = urlTotalVisits;
+    }
+
+    public List<UrlPeriodDataVO> getHourlyTotalVisits() {
+        return hourlyTotalVisits;
+    }
+
+    public void setHourlyTotalVisits(List<UrlPeriodDataVO> hourlyTotalVisits) {
+        this.hourlyTotalVisits = hourlyTotalVisits;
+    }
+
+    public List<UrlPeriodDataVO> getDailyTotalVisits() {
+        return dailyTotalVisits;
+    }
+
+    public void setDailyTotalVisits(List<UrlPeriodDataVO> dailyTotalVisits) {
+        this.dailyTotalVisits = dailyTotalVisits;
+    }
+
+    @Override
+    public String toString() {
+        return "AccessLogSummaryVO{" +
+                "urlDailyVisits=" + urlDailyVisits +
+                ", urlTotalVisits=" + urlTotalVisits +
+                ", hourlyTotalVisits=" + hourlyTotalVisits +
+                ", dailyTotalVisits=" + dailyTotalVisits +
+                '}';
+    }
+}
@@ -0,0 +1,55 @@
+package org.yituliu.entity.vo;
+
+import java.util.Date;
+
+/**
+ * 寻访记录导入任务VO
+ * 创建任务时返回，包含任务在队列中的位置和预计开始时间
+ */
+public class PoolRecordTaskVO {
+    private String taskId;
+    private Integer queuePosition;  // 按调度器的排序，排在该任务之前的未开始任务数+1，已开始时为0
+    private Date estimatedStartTime;  // 按队列位置和任务平均耗时估计
+
+    public PoolRecordTaskVO() {
+    }
+
+    public PoolRecordTaskVO(String taskId, Integer queuePosition, Date estimatedStartTime) {
+        this.taskId = taskId;
+        this.queuePosition = queuePosition;
+        this.estimatedStartTime = estimatedStartTime;
+    }
+
+    public String getTaskId() {
+        return taskId;
+    }
+
+    public void setTaskId(String taskId) {
+        this.taskId = taskId;
+    }
+
+    public Integer getQueuePosition() {
+        return queuePosition;
+    }
+
+    public void setQueuePosition(Integer queuePosition) {
+        this.queuePosition = queuePosition;
+    }
+
+    public Date getEstimatedStartTime() {
+        return estimatedStartTime;
+    }
+
+    public void setEstimatedStartTime(Date estimatedStartTime) {
+        this.estimatedStartTime = estimatedStartTime;
+    }
+
+    @Override
+    public String toString() {
+        return "PoolRecordTaskVO{" +
+                "taskId='" + taskId + '\'' +
+                ", queuePosition=" + queuePosition +
+                ", estimatedStartTime=" + estimatedStartTime +
+                '}';
+    }
+}
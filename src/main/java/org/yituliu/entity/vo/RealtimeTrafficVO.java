@@ -0,0 +1,42 @@
+package org.yituliu.entity.vo;
+
+/**
+ * 实时流量统计VO
+ * 由内存中的滑动窗口计数器直接生成，包含最近N分钟和最近N小时两个窗口
+ */
+public class RealtimeTrafficVO {
+    private RealtimeWindowVO lastMinutes;
+    private RealtimeWindowVO lastHours;
+
+    public RealtimeTrafficVO() {
+    }
+
+    public RealtimeTrafficVO(RealtimeWindowVO lastMinutes, RealtimeWindowVO lastHours) {
+        this.lastMinutes = lastMinutes;
+        this.lastHours = lastHours;
+    }
+
+    public RealtimeWindowVO getLastMinutes() {
+        return lastMinutes;
+    }
+
+    public void setLastMinutes(RealtimeWindowVO lastMinutes) {
+        this.lastMinutes = lastMinutes;
+    }
+
+    public RealtimeWindowVO getLastHours() {
+        return lastHours;
+    }
+
+    public void setLastHours(RealtimeWindowVO lastHours) {
+        this.lastHours = lastHours;
+    }
+
+    @Override
+    public String toString() {
+        return "RealtimeTrafficVO{" +
+                "lastMinutes=" + lastMinutes +
+                ", lastHours=" + lastHours +
+                '}';
+    }
+}
@@ -0,0 +1,66 @@
+package org.yituliu.entity.vo;
+
+import java.util.List;
+
+/**
+ * 实时流量窗口统计VO
+ * 最近N分钟或N小时内的访问量、独立访客数、访问量最高的URL和逐个时间桶的访问量
+ */
+public class RealtimeWindowVO {
+    private Long pageViews;
+    private Long uniqueVisitors;
+    private List<UrlTotalVisitVO> topUrls;
+    private List<UrlPeriodDataVO> series;
+
+    public RealtimeWindowVO() {
+    }
+
+    public RealtimeWindowVO(Long pageViews, Long uniqueVisitors, List<UrlTotalVisitVO> topUrls, List<UrlPeriodDataVO> series) {
+        this.pageViews = pageViews;
+        this.uniqueVisitors = uniqueVisitors;
+        this.topUrls = topUrls;
+        this.series = series;
+    }
+
+    public Long getPageViews() {
+        return pageViews;
+    }
+
+    public void setPageViews(Long pageViews) {
+        this.pageViews = pageViews;
+    }
+
+    public Long getUniqueVisitors() {
+        return uniqueVisitors;
+    }
+
+    public void setUniqueVisitors(Long uniqueVisitors) {
+        this.uniqueVisitors = uniqueVisitors;
+    }
+
+    public List<UrlTotalVisitVO> getTopUrls() {
+        return topUrls;
+    }
+
+    public void setTopUrls(List<UrlTotalVisitVO> topUrls) {
+        this.topUrls = topUrls;
+    }
+
+    public List<UrlPeriodDataVO> getSeries() {
+        return series;
+    }
+
+    public void setSeries(List<UrlPeriodDataVO> series) {
+        this.series = series;
+    }
+
+    @Override
+    public String toString() {
+        return "RealtimeWindowVO{" +
+                "pageViews=" + pageViews +
+                ", uniqueVisitors=" + uniqueVisitors +
+                ", topUrls=" + topUrls +
+                ", series=" + series +
+                '}';
+    }
+}
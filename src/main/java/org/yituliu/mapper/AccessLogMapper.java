@@ -6,6 +6,7 @@ import org.springframework.stereotype.Repository;
 import org.yituliu.entity.po.AccessLog;
 
 import java.util.Date;
+import java.util.List;
 
 /**
  * 访问日志Mapper接口
@@ -31,4 +32,37 @@ public interface AccessLogMapper extends BaseMapper<AccessLog> {
      * @return 独立访客数
      */
     Long countUniqueVisitors(@Param("startTime") Date startTime, @Param("endTime") Date endTime);
+
+    /**
+     * 按(access_time, id)游标分页查询指定时间范围内的访问日志
+     * 每批从上一批最后一条记录之后继续读取，避免LIMIT offset丢弃前面的行
+     *
+     * @param startTime 开始时间（包含）
+     * @param endTime   结束时间（不包含）
+     * @param lastTime  上一批最后一条记录的访问时间，首批为null
+     * @param lastId    上一批最后一条记录的ID，首批为null
+     * @param batchSize 批次大小
+     * @return 按(access_time, id)升序排列的访问日志，只包含id、url、url_id、ip、access_time列
+     */
+    List<AccessLog> selectBatchAfter(@Param("startTime") Date startTime, @Param("endTime") Date endTime,
+                                     @Param("lastTime") Date lastTime, @Param("lastId") Long lastId,
+                                     @Param("batchSize") int batchSize);
+
+    /**
+     * 查询最早的访问时间
+     *
+     * @return 最早的访问时间，表为空时返回null
+     */
+    Date selectMinAccessTime();
+
+    /**
+     * 删除指定时间范围内的访问日志，每次最多删除limit行
+     *
+     * @param startTime 开始时间（包含）
+     * @param endTime   结束时间（不包含）
+     * @param limit     最多删除的行数
+     * @return 删除的行数
+     */
+    int deleteByTimeRange(@Param("startTime") Date startTime, @Param("endTime") Date endTime,
+                          @Param("limit") int limit);
 }
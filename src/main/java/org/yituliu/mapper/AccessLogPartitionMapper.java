@@ -0,0 +1,44 @@
+package org.yituliu.mapper;
+
+import org.apache.ibatis.annotations.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 访问日志分区管理Mapper接口
+ * 对应数据库表：access_log（按access_time每天一个RANGE COLUMNS分区）
+ * 分区名和边界由AccessLogPartitionService生成，不接受外部输入
+ */
+@Repository
+public interface AccessLogPartitionMapper {
+
+    /**
+     * 查询access_log的全部分区名，表未分区时返回空列表
+     *
+     * @return 分区名列表
+     */
+    List<String> selectPartitionNames();
+
+    /**
+     * 用一次REORGANIZE从p_future分区中拆分出多个新的日分区
+     *
+     * @param partitions 新分区名 → 新分区的上界（不包含），按日期升序，例如 p20260513 → 2026-05-14
+     */
+    void splitFuturePartition(@Param("partitions") Map<String, String> partitions);
+
+    /**
+     * p_future分区中是否有数据
+     *
+     * @return 有数据时返回true
+     */
+    boolean futurePartitionHasRows();
+
+    /**
+     * 删除分区，分区内的数据随之删除，不产生逐行删除的锁和碎片
+     *
+     * @param partitionNames 分区名列表
+     */
+    void dropPartitions(@Param("partitionNames") List<String> partitionNames);
+}
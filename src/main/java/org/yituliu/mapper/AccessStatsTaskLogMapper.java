@@ -0,0 +1,36 @@
+package org.yituliu.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+import org.springframework.stereotype.Repository;
+import org.yituliu.entity.po.AccessStatsTaskLog;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 访问统计任务日志Mapper接口
+ * 对应数据库表：access_stats_task_log
+ */
+@Repository
+public interface AccessStatsTaskLogMapper extends BaseMapper<AccessStatsTaskLog> {
+
+    /**
+     * 记录一个已完成的统计窗口，唯一键(task_type, start_time)冲突时只更新结束时间和更新时间
+     *
+     * @param taskLog 统计任务日志
+     * @return 影响行数
+     */
+    int upsert(AccessStatsTaskLog taskLog);
+
+    /**
+     * 查询指定任务类型在时间范围内已完成的统计窗口开始时间
+     *
+     * @param taskType  任务类型
+     * @param startTime 开始时间（包含）
+     * @param endTime   结束时间（不包含）
+     * @return 已完成窗口的开始时间列表
+     */
+    List<Date> selectCompletedStartTimes(@Param("taskType") String taskType,
+                                         @Param("startTime") Date startTime, @Param("endTime") Date endTime);
+}
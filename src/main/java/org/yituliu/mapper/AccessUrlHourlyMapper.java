@@ -0,0 +1,61 @@
+package org.yituliu.mapper;
+
+import org.apache.ibatis.annotations.Param;
+import org.springframework.stereotype.Repository;
+import org.yituliu.entity.po.AccessUrlHourly;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * URL小时访问量预聚合Mapper接口
+ * 对应数据库表：access_url_hourly
+ */
+@Repository
+public interface AccessUrlHourlyMapper {
+
+    /**
+     * 批量累加URL小时访问量，(url, hour)已存在时pv累加，不存在时插入
+     *
+     * @param list 待累加的URL小时访问量列表
+     * @return 影响行数
+     */
+    int batchUpsert(@Param("list") List<AccessUrlHourly> list);
+
+    /**
+     * 批量写入URL小时访问量，(url, hour)已存在时覆盖pv，用于从原始日志重建
+     *
+     * @param list URL小时访问量列表
+     * @return 影响行数
+     */
+    int batchReplace(@Param("list") List<AccessUrlHourly> list);
+
+    /**
+     * 查询指定时间范围内的全部URL小时访问量
+     *
+     * @param startTime 开始时间（包含）
+     * @param endTime   结束时间（不包含）
+     * @return URL小时访问量列表
+     */
+    List<AccessUrlHourly> selectByHourRange(@Param("startTime") Date startTime, @Param("endTime") Date endTime);
+
+    /**
+     * 查询指定时间范围内指定URL的小时访问量
+     *
+     * @param startTime 开始时间（包含）
+     * @param endTime   结束时间（不包含）
+     * @param urls      URL列表，不能为空
+     * @return URL小时访问量列表
+     */
+    List<AccessUrlHourly> selectByHourRangeAndUrls(@Param("startTime") Date startTime, @Param("endTime") Date endTime,
+                                                   @Param("urls") List<String> urls);
+
+    /**
+     * 统计指定时间范围内所有URL的访问量总和
+     *
+     * @param startTime 开始时间（包含）
+     * @param endTime   结束时间（不包含）
+     * @return 访问量总和
+     */
+    Long sumPvByHourRange(@Param("startTime") Date startTime, @Param("endTime") Date endTime);
+}
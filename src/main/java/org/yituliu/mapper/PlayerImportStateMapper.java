@@ -0,0 +1,31 @@
+package org.yituliu.mapper;
+
+import org.apache.ibatis.annotations.Param;
+import org.springframework.stereotype.Repository;
+import org.yituliu.entity.po.PlayerImportState;
+
+import java.util.List;
+
+/**
+ * 玩家导入状态Mapper接口
+ * 对应数据库表：player_import_state
+ */
+@Repository
+public interface PlayerImportStateMapper {
+
+    /**
+     * 查询玩家所有卡池的导入状态（主键前缀查询）
+     *
+     * @param roleId 玩家roleId
+     * @return 导入状态列表
+     */
+    List<PlayerImportState> selectByRoleId(@Param("roleId") String roleId);
+
+    /**
+     * 批量插入或更新导入状态
+     *
+     * @param states 导入状态列表
+     * @return 影响行数
+     */
+    int upsertBatch(@Param("states") List<PlayerImportState> states);
+}
@@ -1,13 +1,52 @@
 package org.yituliu.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
 import org.yituliu.entity.po.PlayerPoolRecordTask;
 
+import java.util.Date;
+
 public interface PlayerPoolRecordTaskMapper extends BaseMapper<PlayerPoolRecordTask> {
     
     /**
-     * 查询create_time倒序下，startFlag = false的第一个记录
+     * 查询下一个要执行的任务：startFlag = false的任务中，预估开销减去等待秒数 * agingPerSecond最小的一个
+     * 开销小的增量导入优先执行，等待时间越长优先级越高，大任务不会一直等待
+     * @param agingPerSecond 每等待1秒抵扣的开销
+     * @param defaultCost 没有预估开销的任务使用的开销
+     * @param cutoff 更早创建的任务已过期，不会被选中
+     * @param retryBefore 重新排队的任务（update_time不为空）在此时间之前更新的才会被选中
      * @return PlayerPoolRecordTask对象
      */
-    PlayerPoolRecordTask selectFirstByStartFlagFalseOrderByCreateTimeAsc();
+    PlayerPoolRecordTask selectNextPendingTask(@Param("agingPerSecond") int agingPerSecond,
+                                               @Param("defaultCost") int defaultCost,
+                                               @Param("cutoff") Date cutoff,
+                                               @Param("retryBefore") Date retryBefore);
+
+    /**
+     * 按selectNextPendingTask相同的排序，统计排在指定任务之前的未开始且未过期的任务数
+     * @param taskId 任务ID
+     * @param agingPerSecond 每等待1秒抵扣的开销
+     * @param defaultCost 没有预估开销的任务使用的开销
+     * @param cutoff 更早创建的任务已过期，不计入
+     * @return 任务数
+     */
+    int countTasksAhead(@Param("taskId") String taskId,
+                        @Param("agingPerSecond") int agingPerSecond,
+                        @Param("defaultCost") int defaultCost,
+                        @Param("cutoff") Date cutoff);
+
+    /**
+     * 把create_time早于cutoff且未开始的任务标记为已开始并失败，用户重新提交时会创建新任务
+     * @param cutoff 更早创建的任务已过期
+     * @param errorRoleId 失败任务的roleId
+     * @return 更新的任务数
+     */
+    int expireStaleTasks(@Param("cutoff") Date cutoff, @Param("errorRoleId") String errorRoleId);
+
+    /**
+     * 统计startFlag = false且create_time不早于since的任务数，即排队中的任务数
+     * @param since 更早创建的任务已过期，不会执行
+     * @return 任务数
+     */
+    int countPendingTasks(@Param("since") Date since);
 }
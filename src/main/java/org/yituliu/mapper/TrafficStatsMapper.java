@@ -10,4 +10,12 @@ import org.yituliu.entity.po.TrafficStats;
  */
 @Repository
 public interface TrafficStatsMapper extends BaseMapper<TrafficStats> {
-}
\ No newline at end of file
+
+    /**
+     * 写入小时流量统计，唯一键stat_start_time冲突时覆盖原统计结果
+     *
+     * @param trafficStats 流量统计
+     * @return 影响行数
+     */
+    int upsert(TrafficStats trafficStats);
+}
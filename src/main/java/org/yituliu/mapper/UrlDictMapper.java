@@ -0,0 +1,46 @@
+package org.yituliu.mapper;
+
+import org.apache.ibatis.annotations.Param;
+import org.springframework.stereotype.Repository;
+import org.yituliu.entity.po.UrlDict;
+
+import java.util.List;
+
+/**
+ * URL字典Mapper接口
+ * 对应数据库表：url_dict
+ */
+@Repository
+public interface UrlDictMapper {
+
+    /**
+     * 插入URL，URL已存在时忽略
+     *
+     * @param url 标准化后的URL
+     * @return 影响行数
+     */
+    int insertIgnore(@Param("url") String url);
+
+    /**
+     * 根据URL查询ID
+     *
+     * @param url 标准化后的URL
+     * @return URL ID，不存在时返回null
+     */
+    Integer selectIdByUrl(@Param("url") String url);
+
+    /**
+     * 根据ID查询URL
+     *
+     * @param id URL ID
+     * @return 标准化后的URL，不存在时返回null
+     */
+    String selectUrlById(@Param("id") Integer id);
+
+    /**
+     * 查询全部URL，启动时预热缓存
+     *
+     * @return URL字典列表
+     */
+    List<UrlDict> selectAll();
+}
@@ -0,0 +1,147 @@
+package org.yituliu.service;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 访问日志归档文件读取器
+ * 文件通过内存映射读取，只解压用到的列，压缩数据不复制到堆内存
+ * 文件格式见AccessLogArchiveWriter
+ */
+public class AccessLogArchiveReader {
+
+    /**
+     * 逐条处理归档访问记录的回调
+     */
+    @FunctionalInterface
+    public interface ArchivedVisitConsumer {
+        /**
+         * @param url        标准化后的URL
+         * @param timeMillis 访问时间戳
+         * @param ip         客户端IP，读取时不包含IP列则为null
+         */
+        void accept(String url, long timeMillis, String ip);
+    }
+
+    private AccessLogArchiveReader() {
+    }
+
+    /**
+     * 按访问时间升序读取归档文件中[startMillis, endMillis)范围内的访问记录
+     *
+     * @param file        归档文件
+     * @param startMillis 开始时间戳（包含）
+     * @param endMillis   结束时间戳（不包含）
+     * @param includeIp   是否读取IP列，只统计URL访问量时不需要
+     * @param consumer    逐条处理访问记录的回调
+     */
+    public static void read(Path file, long startMillis, long endMillis, boolean includeIp,
+                            ArchivedVisitConsumer consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != AccessLogArchiveWriter.MAGIC) {
+                throw new IOException("不是访问日志归档文件：" + file);
+            }
+            int rowCount = buffer.getInt();
+            long lastMillis = buffer.getLong();
+            int columnCount = buffer.getInt();
+            long[] offsets = new long[columnCount];
+            int[] lengths = new int[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                offsets[i] = buffer.getLong();
+                lengths[i] = buffer.getInt();
+            }
+
+            String[] urls = readDictionary(column(buffer, offsets, lengths, AccessLogArchiveWriter.COLUMN_URL_DICT));
+            String[] ips = includeIp
+                    ? readDictionary(column(buffer, offsets, lengths, AccessLogArchiveWriter.COLUMN_IP_DICT))
+                    : null;
+
+            try (DataInputStream urlIndex = column(buffer, offsets, lengths, AccessLogArchiveWriter.COLUMN_URL_INDEX);
+                 DataInputStream timeDelta = column(buffer, offsets, lengths, AccessLogArchiveWriter.COLUMN_TIME_DELTA);
+                 DataInputStream ipIndex = includeIp
+                         ? column(buffer, offsets, lengths, AccessLogArchiveWriter.COLUMN_IP_INDEX) : null) {
+                for (int row = 0; row < rowCount; row++) {
+                    lastMillis += readVarint(timeDelta);
+                    int url = (int) readVarint(urlIndex);
+                    String ip = ipIndex != null ? ips[(int) readVarint(ipIndex)] : null;
+                    if (lastMillis >= endMillis) {
+                        break;                                               // 按时间升序，之后的记录都超出范围
+                    }
+                    if (lastMillis >= startMillis) {
+                        consumer.accept(urls[url], lastMillis, ip);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 打开一列的解压输入流
+     */
+    private static DataInputStream column(MappedByteBuffer buffer, long[] offsets, int[] lengths, int column)
+            throws IOException {
+        ByteBuffer slice = buffer.duplicate();
+        slice.position((int) offsets[column]);
+        slice.limit((int) offsets[column] + lengths[column]);
+        return new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new ByteBufferInputStream(slice.slice()), 8192)));
+    }
+
+    private static String[] readDictionary(DataInputStream in) throws IOException {
+        try (in) {
+            String[] values = new String[in.readInt()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = in.readUTF();
+            }
+            return values;
+        }
+    }
+
+    private static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+
+    /**
+     * 以输入流的方式读取ByteBuffer
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package org.yituliu.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.yituliu.common.utils.FileUtil;
+import org.yituliu.common.utils.LogUtils;
+import org.yituliu.common.utils.TimeBucketUtil;
+import org.yituliu.mapper.AccessLogMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Date;
+
+/**
+ * 访问日志冷数据归档服务
+ * 超过在线保留期的原始日志按天导出为列式压缩文件（见AccessLogArchiveWriter），导出并校验后才删除数据库中的行
+ * 精确统计扫描原始日志时，已归档的日期读取归档文件，未归档的日期扫描access_log
+ */
+@Service
+public class AccessLogArchiveService {
+
+    /**
+     * 未分区表删除已归档数据时每批删除的行数
+     */
+    private static final int DELETE_BATCH_SIZE = 10_000;
+
+    private static final DateTimeFormatter FILE_DATE_FORMATTER = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final AccessLogMapper accessLogMapper;
+    private final AccessLogScanService accessLogScanService;
+    private final UrlDictService urlDictService;
+    private final Path archiveDir;
+
+    public AccessLogArchiveService(AccessLogMapper accessLogMapper, AccessLogScanService accessLogScanService,
+                                   UrlDictService urlDictService,
+                                   @Value("${access-log.archive-dir:}") String archiveDir) {
+        this.accessLogMapper = accessLogMapper;
+        this.accessLogScanService = accessLogScanService;
+        this.urlDictService = urlDictService;
+        this.archiveDir = requireSharedDir(archiveDir);
+    }
+
+    /**
+     * 归档目录必须是绝对路径，并且是所有实例挂载的同一个共享目录（如NFS）
+     * 归档由删除分区的实例写入，精确统计在任意实例上读取，各实例使用本地目录时其他实例的精确统计会缺少已归档的日期
+     * 未配置或配置为相对路径（通常是实例本地目录）时启动失败
+     */
+    private static Path requireSharedDir(String archiveDir) {
+        if (archiveDir == null || archiveDir.isBlank()) {
+            throw new IllegalStateException("未配置access-log.archive-dir，访问日志归档目录必须是所有实例共享的绝对路径");
+        }
+        Path path = Paths.get(archiveDir.trim());
+        if (!path.isAbsolute()) {
+            throw new IllegalStateException("access-log.archive-dir必须是所有实例共享的绝对路径：" + archiveDir);
+        }
+        return path;
+    }
+
+    /**
+     * 指定日期是否已归档
+     */
+    public boolean isArchived(LocalDate day) {
+        return Files.exists(archiveFile(day));
+    }
+
+    /**
+     * 把指定日期的原始日志导出为归档文件，已归档时不重复导出
+     * 先写入临时文件，读取校验行数一致后再改名为正式文件
+     *
+     * @param day 日期
+     * @throws IOException 导出或校验失败时抛出，此时不能删除该日期的原始日志
+     */
+    public synchronized void archiveDay(LocalDate day) throws IOException {
+        Path file = archiveFile(day);
+        if (Files.exists(file)) {
+            return;
+        }
+        Date startTime = dayStart(day);
+        Date endTime = dayStart(day.plusDays(1));
+
+        AccessLogArchiveWriter writer = new AccessLogArchiveWriter(startTime.getTime());
+        accessLogScanService.scan(startTime, endTime,                        // 按(access_time, id)升序扫描
+                log -> writer.append(urlDictService.resolveUrl(log.getUrlId(), log.getUrl()),
+                        log.getAccessTime().getTime(), log.getIp()));
+
+        Path tempFile = archiveDir.resolve(file.getFileName() + ".tmp");
+        if (!FileUtil.saveBytesToFile(writer.toBytes(), tempFile.toString())) {
+            throw new IOException("归档文件写入失败：" + tempFile);
+        }
+        int[] readCount = new int[1];
+        AccessLogArchiveReader.read(tempFile, startTime.getTime(), endTime.getTime(), true,
+                (url, timeMillis, ip) -> readCount[0]++);
+        if (readCount[0] != writer.getRowCount()) {
+            FileUtil.deleteFile(tempFile.toString());
+            throw new IOException("归档文件校验失败：" + file + "，写入" + writer.getRowCount() + "行，读取" + readCount[0] + "行");
+        }
+        Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE);
+        LogUtils.info("访问日志归档完成：{}，{}行，{}字节", day, writer.getRowCount(), Files.size(file));
+    }
+
+    /**
+     * 归档从最早的数据到指定日期（包含）之间所有未归档的日期
+     * 第一个分区包含分区前的全部历史数据，删除前需要全部归档
+     *
+     * @param lastDay 最后归档的日期
+     */
+    public void archiveThrough(LocalDate lastDay) throws IOException {
+        Date minAccessTime = accessLogMapper.selectMinAccessTime();
+        if (minAccessTime == null) {
+            return;
+        }
+        for (LocalDate day = toLocalDate(minAccessTime); !day.isAfter(lastDay); day = day.plusDays(1)) {
+            archiveDay(day);
+        }
+    }
+
+    /**
+     * 未分区表归档并删除指定日期之前的原始日志
+     * 分区表由AccessLogPartitionService归档后删除整个分区
+     *
+     * @param cutoff 早于该日期的数据被归档和删除
+     */
+    public void archiveAndDeleteBefore(LocalDate cutoff) throws IOException {
+        Date minAccessTime = accessLogMapper.selectMinAccessTime();
+        if (minAccessTime == null) {
+            return;
+        }
+        for (LocalDate day = toLocalDate(minAccessTime); day.isBefore(cutoff); day = day.plusDays(1)) {
+            archiveDay(day);                                                  // 归档失败时抛出异常，不删除
+            Date startTime = dayStart(day);
+            Date endTime = dayStart(day.plusDays(1));
+            int deleted;
+            do {
+                deleted = accessLogMapper.deleteByTimeRange(startTime, endTime, DELETE_BATCH_SIZE); // 分批删除，避免长时间锁表
+            } while (deleted >= DELETE_BATCH_SIZE);
+        }
+    }
+
+    /**
+     * 按访问时间扫描指定范围内的原始日志，已归档的日期读取归档文件，其余日期扫描access_log
+     *
+     * @param startTime 开始时间（包含）
+     * @param endTime   结束时间（不包含）
+     * @param includeIp 是否需要IP
+     * @param consumer  逐条处理访问记录的回调
+     */
+    public void scan(Date startTime, Date endTime, boolean includeIp,
+                     AccessLogArchiveReader.ArchivedVisitConsumer consumer) {
+        long startMillis = startTime.getTime();
+        long endMillis = endTime.getTime();
+        long dbStart = -1;                                                    // 连续的未归档日期合并为一次数据库扫描
+
+        LocalDate day = toLocalDate(startTime);
+        while (dayStart(day).getTime() < endMillis) {
+            long from = Math.max(startMillis, dayStart(day).getTime());
+            long to = Math.min(endMillis, dayStart(day.plusDays(1)).getTime());
+            if (isArchived(day)) {
+                if (dbStart >= 0) {
+                    scanDatabase(dbStart, from, consumer);
+                    dbStart = -1;
+                }
+                try {
+                    AccessLogArchiveReader.read(archiveFile(day), from, to, includeIp, consumer);
+                } catch (IOException e) {
+                    throw new IllegalStateException("读取访问日志归档文件失败：" + archiveFile(day), e);
+                }
+            } else if (dbStart < 0) {
+                dbStart = from;
+            }
+            day = day.plusDays(1);
+        }
+        if (dbStart >= 0) {
+            scanDatabase(dbStart, endMillis, consumer);
+        }
+    }
+
+    private void scanDatabase(long startMillis, long endMillis, AccessLogArchiveReader.ArchivedVisitConsumer consumer) {
+        accessLogScanService.scan(new Date(startMillis), new Date(endMillis),
+                log -> consumer.accept(urlDictService.resolveUrl(log.getUrlId(), log.getUrl()),
+                        log.getAccessTime().getTime(), log.getIp()));
+    }
+
+    private Path archiveFile(LocalDate day) {
+        return archiveDir.resolve("access-log-" + day.format(FILE_DATE_FORMATTER) + ".ala");
+    }
+
+    private LocalDate toLocalDate(Date time) {
+        return time.toInstant().atZone(TimeBucketUtil.ZONE).toLocalDate();
+    }
+
+    private Date dayStart(LocalDate day) {
+        return Date.from(day.atStartOfDay(TimeBucketUtil.ZONE).toInstant());
+    }
+}
@@ -0,0 +1,154 @@
+package org.yituliu.service;
+
+import org.yituliu.common.utils.Gzip;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 访问日志归档文件写入器
+ * 一个文件保存一天的访问日志，按列分别gzip压缩：
+ * URL字典、每行的URL序号、相邻两行访问时间的差值（varint）、IP字典、每行的IP序号
+ * 文件头不压缩，记录每列的偏移和长度，读取时只需解压用到的列
+ * 访问记录必须按访问时间升序写入；非线程安全，每个文件创建一个实例
+ */
+public class AccessLogArchiveWriter {
+
+    /**
+     * 文件头魔数 "ALA1"
+     */
+    static final int MAGIC = 0x414C4131;
+
+    static final int COLUMN_URL_DICT = 0;
+    static final int COLUMN_URL_INDEX = 1;
+    static final int COLUMN_TIME_DELTA = 2;
+    static final int COLUMN_IP_DICT = 3;
+    static final int COLUMN_IP_INDEX = 4;
+    static final int COLUMN_COUNT = 5;
+
+    /**
+     * 文件头长度：魔数、行数、当天起始时间戳、列数、每列(偏移, 长度)
+     */
+    static final int HEADER_SIZE = 4 + 4 + 8 + 4 + COLUMN_COUNT * (8 + 4);
+
+    private final long dayStartMillis;
+    private final Dictionary urlDict = new Dictionary();
+    private final Dictionary ipDict = new Dictionary();
+    private final ByteArrayOutputStream urlIndex = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream timeDelta = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream ipIndex = new ByteArrayOutputStream();
+
+    private long lastMillis;
+    private int rowCount;
+
+    /**
+     * @param dayStartMillis 归档日期0点的时间戳，第一行的时间差值相对于该时间
+     */
+    public AccessLogArchiveWriter(long dayStartMillis) {
+        this.dayStartMillis = dayStartMillis;
+        this.lastMillis = dayStartMillis;
+    }
+
+    /**
+     * 追加一条访问记录
+     *
+     * @param url        标准化后的URL
+     * @param timeMillis 访问时间戳，不能早于上一条记录
+     * @param ip         客户端IP
+     * @throws IllegalArgumentException 访问时间早于上一条记录，或URL、IP的UTF-8编码超过65535字节，此时不写入任何列
+     */
+    public void append(String url, long timeMillis, String ip) {
+        if (timeMillis < lastMillis) {
+            throw new IllegalArgumentException("访问记录必须按访问时间升序写入");
+        }
+        int urlId = urlDict.indexOf(url);
+        int ipId = ipDict.indexOf(ip != null ? ip : "Unknown");              // 先查询两个字典，失败时各列仍保持对齐
+        writeVarint(urlIndex, urlId);
+        writeVarint(timeDelta, timeMillis - lastMillis);                     // 按时间排序后差值很小，varint通常1-3字节
+        writeVarint(ipIndex, ipId);
+        lastMillis = timeMillis;
+        rowCount++;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * 生成归档文件内容
+     *
+     * @return 文件字节数组
+     */
+    public byte[] toBytes() throws IOException {
+        byte[][] columns = new byte[COLUMN_COUNT][];
+        columns[COLUMN_URL_DICT] = Gzip.compress(urlDict.toBytes());
+        columns[COLUMN_URL_INDEX] = Gzip.compress(urlIndex.toByteArray());
+        columns[COLUMN_TIME_DELTA] = Gzip.compress(timeDelta.toByteArray());
+        columns[COLUMN_IP_DICT] = Gzip.compress(ipDict.toBytes());
+        columns[COLUMN_IP_INDEX] = Gzip.compress(ipIndex.toByteArray());
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bos);
+        out.writeInt(MAGIC);
+        out.writeInt(rowCount);
+        out.writeLong(dayStartMillis);
+        out.writeInt(COLUMN_COUNT);
+        long offset = HEADER_SIZE;
+        for (byte[] column : columns) {
+            out.writeLong(offset);
+            out.writeInt(column.length);
+            offset += column.length;
+        }
+        for (byte[] column : columns) {
+            out.write(column);
+        }
+        out.flush();
+        return bos.toByteArray();
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * 字符串字典，按首次出现的顺序编号
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final ByteArrayOutputStream entries = new ByteArrayOutputStream();
+        private final DataOutputStream entriesOut = new DataOutputStream(entries);
+
+        private int indexOf(String value) {
+            Integer index = indexes.get(value);
+            if (index == null) {
+                try {
+                    entriesOut.writeUTF(value);                              // 超过65535字节时抛出异常且不写入任何字节
+                } catch (UTFDataFormatException e) {
+                    throw new IllegalArgumentException("字典条目超过65535字节", e);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);                      // 写入内存不会失败
+                }
+                index = indexes.size();
+                indexes.put(value, index);
+            }
+            return index;
+        }
+
+        private byte[] toBytes() throws IOException {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(entries.size() + 4);
+            DataOutputStream out = new DataOutputStream(bos);
+            out.writeInt(indexes.size());
+            entries.writeTo(out);
+            out.flush();
+            return bos.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package org.yituliu.service;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.yituliu.common.utils.LogUtils;
+import org.yituliu.common.utils.TimeBucketUtil;
+import org.yituliu.mapper.AccessLogPartitionMapper;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * 访问日志分区轮换服务
+ * access_log按access_time每天一个分区（pYYYYMMDD），最后一个分区p_future存放尚未创建分区的日期
+ * 每天提前创建未来几天的分区，超过保留期的分区先归档为列式压缩文件再删除，过期数据的清理只是删除分区文件
+ * 按access_time范围查询时MySQL只扫描范围内的分区
+ * 多个实例部署时由Redis锁保证同一时间只有一个实例轮换，避免并发重组p_future和重复删除分区
+ */
+@Service
+public class AccessLogPartitionService {
+
+    /**
+     * 提前创建的天数
+     */
+    private static final int PRECREATE_DAYS = 7;
+
+    /**
+     * 原始日志保留的天数
+     */
+    public static final int RETENTION_DAYS = 90;
+
+    private static final DateTimeFormatter NAME_FORMATTER = DateTimeFormatter.ofPattern("'p'yyyyMMdd");
+
+    private static final Pattern DAY_PARTITION = Pattern.compile("p\\d{8}");
+
+    // 分区轮换锁，所有实例同一时间只有一个执行轮换
+    private static final String ROTATE_LOCK_KEY = "access_log:partition_rotate_lock";
+
+    /**
+     * 轮换锁的最长持有时间，包括归档过期分区的时间
+     */
+    private static final long ROTATE_LOCK_TTL = 60 * 60 * 1000L;
+
+    // 只有锁的值仍是自己的令牌时才删除，避免删除锁过期后其他实例获取的锁
+    private static final DefaultRedisScript<Long> RELEASE_LOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final AccessLogPartitionMapper accessLogPartitionMapper;
+    private final AccessLogArchiveService accessLogArchiveService;
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    public AccessLogPartitionService(AccessLogPartitionMapper accessLogPartitionMapper,
+                                     AccessLogArchiveService accessLogArchiveService,
+                                     RedisTemplate<String, Object> redisTemplate) {
+        this.accessLogPartitionMapper = accessLogPartitionMapper;
+        this.accessLogArchiveService = accessLogArchiveService;
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * 应用启动完成后在后台轮换一次分区，停机期间错过的日期也会补齐
+     */
+    @Async("asyncExecutor")
+    @EventListener(ApplicationReadyEvent.class)
+    public void rotateOnStartup() {
+        try {
+            rotate();
+        } catch (Exception e) {
+            LogUtils.error("启动时轮换访问日志分区失败", e);
+        }
+    }
+
+    /**
+     * 创建今天到未来PRECREATE_DAYS天的分区，归档并删除早于保留期的分区
+     * 表未分区时归档后分批删除早于保留期的行
+     * 每个实例都会在定时任务和启动时调用，持有Redis锁的实例才执行，其他实例跳过本次轮换
+     */
+    public synchronized void rotate() throws IOException {
+        String token = UUID.randomUUID().toString();
+        if (!Boolean.TRUE.equals(redisTemplate.opsForValue()
+                .setIfAbsent(ROTATE_LOCK_KEY, token, ROTATE_LOCK_TTL, TimeUnit.MILLISECONDS))) {
+            LogUtils.info("其他实例正在轮换访问日志分区，跳过本次轮换");
+            return;
+        }
+        try {
+            rotateLocked();
+        } finally {
+            redisTemplate.execute(RELEASE_LOCK_SCRIPT, List.of(ROTATE_LOCK_KEY), token);
+        }
+    }
+
+    private void rotateLocked() throws IOException {
+        LocalDate today = LocalDate.now(TimeBucketUtil.ZONE);
+        LocalDate cutoff = today.minusDays(RETENTION_DAYS);
+        List<String> partitionNames = accessLogPartitionMapper.selectPartitionNames();
+        if (partitionNames.isEmpty()) {
+            LogUtils.info("access_log未分区，归档后逐批删除过期数据");
+            accessLogArchiveService.archiveAndDeleteBefore(cutoff);
+            return;
+        }
+
+        LocalDate lastDay = lastDayPartition(partitionNames);
+        LocalDate day = lastDay == null ? today : lastDay.plusDays(1);      // 只能在最后一个日分区之后追加
+        Map<String, String> newPartitions = new LinkedHashMap<>();
+        for (; !day.isAfter(today.plusDays(PRECREATE_DAYS)); day = day.plusDays(1)) {
+            newPartitions.put(day.format(NAME_FORMATTER), day.plusDays(1).toString());
+        }
+        if (!newPartitions.isEmpty()) {
+            if (accessLogPartitionMapper.futurePartitionHasRows()) {
+                // 分区没有提前创建（如轮换任务长时间未执行），重组需要拷贝p_future中的行并锁表
+                LogUtils.error("access_log的p_future分区中有数据，本次重组需要拷贝这些行，请检查分区轮换任务");
+            }
+            accessLogPartitionMapper.splitFuturePartition(newPartitions);   // 一次重组创建全部缺失的分区，p_future只拷贝一次
+        }
+        int created = newPartitions.size();
+
+        List<String> expired = new ArrayList<>();
+        for (String name : partitionNames) {
+            LocalDate partitionDay = parseDay(name);
+            if (partitionDay != null && partitionDay.isBefore(cutoff)) {
+                try {
+                    accessLogArchiveService.archiveThrough(partitionDay);    // 该分区及之前的日期全部归档成功后才删除分区
+                    expired.add(name);
+                } catch (IOException e) {
+                    LogUtils.error("访问日志归档失败，保留分区{}", name, e);
+                }
+            }
+        }
+        if (!expired.isEmpty()) {
+            accessLogPartitionMapper.dropPartitions(expired);
+        }
+
+        LogUtils.info("访问日志分区轮换完成：创建{}个分区，删除{}个分区", created, expired.size());
+    }
+
+    private LocalDate lastDayPartition(List<String> partitionNames) {
+        LocalDate last = null;
+        for (String name : partitionNames) {
+            LocalDate day = parseDay(name);
+            if (day != null && (last == null || day.isAfter(last))) {
+                last = day;
+            }
+        }
+        return last;
+    }
+
+    /**
+     * 解析日分区名对应的日期，非日分区（如p_future）返回null
+     */
+    private LocalDate parseDay(String partitionName) {
+        if (!DAY_PARTITION.matcher(partitionName).matches()) {
+            return null;
+        }
+        return LocalDate.parse(partitionName, NAME_FORMATTER);
+    }
+}
@@ -0,0 +1,55 @@
+package org.yituliu.service;
+
+import org.springframework.stereotype.Service;
+import org.yituliu.entity.po.AccessLog;
+import org.yituliu.mapper.AccessLogMapper;
+
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 访问日志扫描服务
+ * 按(access_time, id)游标分页读取指定时间范围内的access_log原始日志
+ * 每批都从索引上的游标位置开始读取，扫描耗时与时间范围内的行数成线性关系
+ */
+@Service
+public class AccessLogScanService {
+
+    private static final int BATCH_SIZE = 100_000;
+
+    private final AccessLogMapper accessLogMapper;
+
+    public AccessLogScanService(AccessLogMapper accessLogMapper) {
+        this.accessLogMapper = accessLogMapper;
+    }
+
+    /**
+     * 按访问时间升序扫描指定时间范围内的访问日志
+     * 返回的访问日志只包含id、url、url_id、ip、access_time列
+     *
+     * @param startTime 开始时间（包含）
+     * @param endTime   结束时间（不包含）
+     * @param consumer  逐条处理访问日志的回调
+     */
+    public void scan(Date startTime, Date endTime, Consumer<AccessLog> consumer) {
+        Date lastTime = null;
+        Long lastId = null;
+        while (true) {
+            List<AccessLog> batch = accessLogMapper.selectBatchAfter(       // 每批查询10万条记录
+                    startTime, endTime, lastTime, lastId, BATCH_SIZE);
+
+            for (AccessLog log : batch) {
+                consumer.accept(log);
+            }
+
+            if (batch.size() < BATCH_SIZE) {                                // 不足一批说明已读取到末尾
+                break;
+            }
+
+            AccessLog last = batch.get(batch.size() - 1);                   // 记录游标位置，下一批从其后继续
+            lastTime = last.getAccessTime();
+            lastId = last.getId();
+        }
+    }
+}
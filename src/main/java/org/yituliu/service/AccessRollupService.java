@@ -0,0 +1,202 @@
+package org.yituliu.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Service;
+import org.yituliu.common.enums.ResultCode;
+import org.yituliu.common.exception.TooManyRequestsException;
+import org.yituliu.common.utils.LogUtils;
+import org.yituliu.common.utils.TimeBucketUtil;
+import org.yituliu.entity.po.AccessUrlHourly;
+import org.yituliu.mapper.AccessUrlHourlyMapper;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * URL小时访问量预聚合服务
+ * 写入访问日志时在内存中按(小时, URL)累加访问次数，由定时任务批量upsert到access_url_hourly表
+ * 后台统计接口读取预聚合表，避免扫描access_log原始日志
+ */
+@Service
+public class AccessRollupService {
+
+    private static final int UPSERT_BATCH_SIZE = 500;
+
+    /**
+     * 小时结束后保留计数器的时间，期间该小时按当前小时处理（取出并清零，不移除）
+     */
+    private static final long REMOVE_GRACE_MILLIS = 5 * TimeBucketUtil.ONE_MINUTE;
+
+    private final AccessUrlHourlyMapper accessUrlHourlyMapper;
+    private final AccessLogArchiveService accessLogArchiveService;
+
+    // 是否正在从原始日志重建
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    // 整点小时时间戳 → (url → 访问次数)
+    private final Map<Long, Map<String, LongAdder>> hourlyBuffer = new ConcurrentHashMap<>();
+
+    public AccessRollupService(AccessUrlHourlyMapper accessUrlHourlyMapper,
+                               AccessLogArchiveService accessLogArchiveService) {
+        this.accessUrlHourlyMapper = accessUrlHourlyMapper;
+        this.accessLogArchiveService = accessLogArchiveService;
+    }
+
+    /**
+     * 在内存中累加一次访问
+     *
+     * @param url        标准化后的URL
+     * @param accessTime 访问时间
+     */
+    public void increment(String url, Date accessTime) {
+        long hour = TimeBucketUtil.truncateToHour(accessTime.getTime());
+        hourlyBuffer
+                .computeIfAbsent(hour, k -> new ConcurrentHashMap<>())          // 该小时首次访问时创建内部Map
+                .computeIfAbsent(url, k -> new LongAdder())                      // 该URL首次访问时创建计数器
+                .increment();
+    }
+
+    /**
+     * 将内存中累加的访问次数批量upsert到数据库
+     * 计数器取出并清零后保留，结束超过REMOVE_GRACE_MILLIS的小时才整体移除：
+     * 刚结束的小时仍可能有请求线程持有该小时的Map并在移除后累加，这些计数会随Map一起丢失
+     */
+    public synchronized void flush() {
+        long removeBefore = TimeBucketUtil.truncateToHour(System.currentTimeMillis() - REMOVE_GRACE_MILLIS)
+                - TimeBucketUtil.ONE_HOUR;                                       // 结束时间早于now - 宽限期的小时
+        List<AccessUrlHourly> rows = new ArrayList<>();
+
+        for (Long hour : hourlyBuffer.keySet()) {
+            Map<String, LongAdder> urlCount = hour <= removeBefore
+                    ? hourlyBuffer.remove(hour)                                  // 宽限期后不会再有新访问，整体移除
+                    : hourlyBuffer.get(hour);
+            if (urlCount == null) {
+                continue;
+            }
+            Date hourDate = new Date(hour);
+            for (Map.Entry<String, LongAdder> entry : urlCount.entrySet()) {
+                long pv = entry.getValue().sumThenReset();                       // 取出并清零，并发的累加计入下一次写入
+                if (pv > 0) {
+                    rows.add(new AccessUrlHourly(entry.getKey(), hourDate, pv));
+                }
+            }
+        }
+
+        for (int i = 0; i < rows.size(); i += UPSERT_BATCH_SIZE) {
+            List<AccessUrlHourly> batch = rows.subList(i, Math.min(i + UPSERT_BATCH_SIZE, rows.size()));
+            try {
+                accessUrlHourlyMapper.batchUpsert(batch);
+            } catch (Exception e) {
+                // 写入失败时将计数放回内存，等待下一次写入
+                LogUtils.error("URL小时访问量写入失败，{}条记录等待重试", batch.size(), e);
+                for (AccessUrlHourly row : batch) {
+                    hourlyBuffer
+                            .computeIfAbsent(row.getHour().getTime(), k -> new ConcurrentHashMap<>())
+                            .computeIfAbsent(row.getUrl(), k -> new LongAdder())
+                            .add(row.getPv());
+                }
+            }
+        }
+    }
+
+    /**
+     * 扫描原始日志（含归档文件）重建指定时间范围内的URL小时访问量，覆盖已有数据，可重复执行
+     * URL由UrlDictService.resolveUrl标准化，与写入时的标准化规则完全一致，用于上线时回填历史数据
+     * 不重建最近一小时，这些小时可能还有尚未写入数据库的内存计数；正在重建时再次调用返回429
+     *
+     * @param startTime 开始时间，向下对齐到整点
+     * @param endTime   结束时间，向下对齐到整点
+     * @return 写入的行数
+     */
+    public int rebuild(Date startTime, Date endTime) {
+        if (!rebuilding.compareAndSet(false, true)) {                          // 同一时间只允许一次重建
+            throw new TooManyRequestsException(ResultCode.TOO_MANY_REQUESTS_PLEASE_TRY_AGAIN, 60);
+        }
+        try {
+            return rebuildRange(startTime, endTime);
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    private int rebuildRange(Date startTime, Date endTime) {
+        long lastSettledHour = TimeBucketUtil.truncateToHour(System.currentTimeMillis()) - TimeBucketUtil.ONE_HOUR;
+        long end = Math.min(TimeBucketUtil.truncateToHour(endTime.getTime()), lastSettledHour);
+        int written = 0;
+        for (long from = TimeBucketUtil.truncateToHour(startTime.getTime()); from < end; from += 24 * TimeBucketUtil.ONE_HOUR) {
+            long to = Math.min(from + 24 * TimeBucketUtil.ONE_HOUR, end);       // 每次扫描一天，内存中只保存一天的计数
+            Map<Long, Map<String, LongAdder>> counts = new HashMap<>();
+            accessLogArchiveService.scan(new Date(from), new Date(to), false, (url, timeMillis, ip) -> counts
+                    .computeIfAbsent(TimeBucketUtil.truncateToHour(timeMillis), k -> new HashMap<>())
+                    .computeIfAbsent(url, k -> new LongAdder())
+                    .increment());
+
+            List<AccessUrlHourly> rows = new ArrayList<>();
+            counts.forEach((hour, urlCount) -> urlCount.forEach((url, pv) ->
+                    rows.add(new AccessUrlHourly(url, new Date(hour), pv.sum()))));
+            for (int i = 0; i < rows.size(); i += UPSERT_BATCH_SIZE) {
+                accessUrlHourlyMapper.batchReplace(rows.subList(i, Math.min(i + UPSERT_BATCH_SIZE, rows.size())));
+            }
+            written += rows.size();
+        }
+        return written;
+    }
+
+    /**
+     * 查询指定时间范围内的URL小时访问量
+     * 开始时间向下对齐到整点，即开始时间所在的小时整体计入
+     *
+     * @param startTime 开始时间
+     * @param endTime   结束时间
+     * @return URL小时访问量列表
+     */
+    public List<AccessUrlHourly> listUrlHourly(Date startTime, Date endTime) {
+        return accessUrlHourlyMapper.selectByHourRange(new Date(TimeBucketUtil.truncateToHour(startTime.getTime())), endTime);
+    }
+
+    /**
+     * 查询指定时间范围内指定URL的小时访问量
+     * 开始时间向下对齐到整点，与listUrlHourly的范围一致
+     *
+     * @param startTime 开始时间
+     * @param endTime   结束时间
+     * @param urls      URL列表
+     * @return URL小时访问量列表
+     */
+    public List<AccessUrlHourly> listUrlHourly(Date startTime, Date endTime, List<String> urls) {
+        if (urls.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return accessUrlHourlyMapper.selectByHourRangeAndUrls(
+                new Date(TimeBucketUtil.truncateToHour(startTime.getTime())), endTime, urls);
+    }
+
+    /**
+     * 统计指定时间范围内所有URL的访问量总和
+     * 开始时间向下对齐到整点，与listUrlHourly的范围一致
+     *
+     * @param startTime 开始时间
+     * @param endTime   结束时间
+     * @return 访问量总和
+     */
+    public long sumPv(Date startTime, Date endTime) {
+        Long total = accessUrlHourlyMapper.sumPvByHourRange(
+                new Date(TimeBucketUtil.truncateToHour(startTime.getTime())), endTime);
+        return total != null ? total : 0L;
+    }
+
+    /**
+     * 应用关闭前写入内存中剩余的访问次数
+     */
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+}
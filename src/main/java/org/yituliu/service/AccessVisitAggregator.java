@@ -0,0 +1,212 @@
+package org.yituliu.service;
+
+import org.yituliu.common.utils.LongCountMap;
+import org.yituliu.common.utils.TimeBucketUtil;
+import org.yituliu.entity.vo.UrlPeriodDataVO;
+import org.yituliu.entity.vo.UrlTotalVisitVO;
+import org.yituliu.entity.vo.UrlVisitGroupVO;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 访问量单次遍历聚合器
+ * 遍历一次访问记录，按(url, epoch小时)累计访问次数，之后可同时输出
+ * URL每日访问量、URL总访问量、每小时总访问量、每日总访问量四种统计结果
+ * 逐条累计时只做long运算和基本类型计数，时间标签在输出时每个时间桶只格式化一次
+ * 非线程安全，每次统计创建一个实例
+ */
+public class AccessVisitAggregator {
+
+    private final long startMillis;
+    private final long endMillis;
+
+    // url → (epoch小时 → 访问次数)
+    private final Map<String, LongCountMap> urlHourCount = new HashMap<>();
+
+    public AccessVisitAggregator(Date startTime, Date endTime) {
+        this.startMillis = startTime.getTime();
+        this.endMillis = endTime.getTime();
+    }
+
+    /**
+     * 累计一条访问记录
+     *
+     * @param url        标准化后的URL
+     * @param timeMillis 访问时间戳
+     * @param count      该记录代表的访问次数
+     */
+    public void add(String url, long timeMillis, long count) {
+        urlHourCount
+                .computeIfAbsent(url, k -> new LongCountMap())                // 该URL首次出现时创建内部Map
+                .add(TimeBucketUtil.toEpochHour(timeMillis), count);          // 累计该小时的访问次数
+    }
+
+    /**
+     * URL每日访问量，返回总访问量Top N的URL，每个URL包含时间范围内全部日期的数据，无数据的填0
+     *
+     * @param topCount 返回的URL数量
+     * @return URL分组访问量列表
+     */
+    public List<UrlVisitGroupVO> toUrlDailyVisits(int topCount) {
+        LongCountMap dayOfHour = new LongCountMap();                          // epoch小时 → epoch天，每个小时只换算一次
+        long firstDay = TimeBucketUtil.toEpochDay(startMillis);
+        long endDay = TimeBucketUtil.toEpochDay(endMillis);
+        List<String> dayLabels = dayLabels(firstDay, endDay);
+
+        List<UrlVisitGroupVO> result = new ArrayList<>(topCount);
+        for (UrlTotal top : sortByTotalDesc(topCount)) {
+            LongCountMap dayCount = new LongCountMap();
+            urlHourCount.get(top.url).forEach((hour, count) -> {
+                if (!dayOfHour.containsKey(hour)) {
+                    dayOfHour.add(hour, TimeBucketUtil.epochHourToEpochDay(hour));
+                }
+                dayCount.add(dayOfHour.get(hour), count);
+            });
+            List<UrlPeriodDataVO> dataList = new ArrayList<>(dayLabels.size());
+            for (long day = firstDay; day < endDay; day++) {
+                dataList.add(new UrlPeriodDataVO(dayLabels.get((int) (day - firstDay)), dayCount.get(day))); // 无数据的填0
+            }
+            result.add(new UrlVisitGroupVO(top.url, dataList));              // 每个URL一个分组
+        }
+        return result;
+    }
+
+    /**
+     * URL总访问量，Top N 单独列出，其余合并为"其他"，第一项固定为"访问总和"
+     *
+     * @param topCount 单独列出的URL数量
+     * @return URL总访问量列表
+     */
+    public List<UrlTotalVisitVO> toUrlTotalVisits(int topCount) {
+        List<UrlTotal> sortedTotals = sortByTotalDesc(urlHourCount.size());
+
+        List<UrlTotalVisitVO> result = new ArrayList<>(topCount + 2);
+        long total = 0;                                                       // 所有URL访问量总和
+        long otherCount = 0;
+        for (int i = 0; i < sortedTotals.size(); i++) {
+            UrlTotal e = sortedTotals.get(i);
+            total += e.total;
+            if (i < topCount) {
+                result.add(new UrlTotalVisitVO(e.url, e.total));             // Top N 单独列出
+            } else {
+                otherCount += e.total;                                       // 剩余URL合并为"其他"
+            }
+        }
+        if (sortedTotals.size() > topCount) {
+            result.add(new UrlTotalVisitVO("其他", otherCount));
+        }
+        result.add(0, new UrlTotalVisitVO("访问总和", total));               // 插入到列表第一项
+        return result;
+    }
+
+    /**
+     * URL总访问量，只累计了部分URL（例如草图给出的候选URL）时使用
+     * Top N 单独列出，"其他"为所有URL访问量总和减去Top N之和，第一项固定为"访问总和"
+     *
+     * @param topCount 单独列出的URL数量
+     * @param total    所有URL的访问量总和
+     * @return URL总访问量列表
+     */
+    public List<UrlTotalVisitVO> toUrlTotalVisits(int topCount, long total) {
+        List<UrlTotalVisitVO> result = new ArrayList<>(topCount + 2);
+        result.add(new UrlTotalVisitVO("访问总和", total));
+        long topTotal = 0;
+        for (UrlTotal e : sortByTotalDesc(topCount)) {
+            topTotal += e.total;
+            result.add(new UrlTotalVisitVO(e.url, e.total));
+        }
+        if (total > topTotal) {
+            result.add(new UrlTotalVisitVO("其他", total - topTotal));       // 未列出的URL合并为"其他"
+        }
+        return result;
+    }
+
+    /**
+     * 每小时总访问量（所有URL聚合），时间范围内无数据的小时填0
+     *
+     * @return 每小时总访问量列表
+     */
+    public List<UrlPeriodDataVO> toHourlyTotalVisits() {
+        LongCountMap hourCount = hourTotals();
+        long firstHour = TimeBucketUtil.toEpochHour(startMillis);            // 对齐到整点
+        long endHour = TimeBucketUtil.toEpochHour(endMillis);
+
+        List<UrlPeriodDataVO> result = new ArrayList<>((int) Math.max(0, endHour - firstHour));
+        for (long hour = firstHour; hour < endHour; hour++) {                // 遍历每个整点直到结束时间
+            result.add(new UrlPeriodDataVO(TimeBucketUtil.formatHour(hour), hourCount.get(hour))); // 填充真实值或0
+        }
+        return result;
+    }
+
+    /**
+     * 每日总访问量（所有URL聚合），时间范围内无数据的日期填0
+     *
+     * @return 每日总访问量列表
+     */
+    public List<UrlPeriodDataVO> toDailyTotalVisits() {
+        LongCountMap dayCount = new LongCountMap();
+        hourTotals().forEach((hour, count) ->                                 // 每个小时只换算一次
+                dayCount.add(TimeBucketUtil.epochHourToEpochDay(hour), count));
+
+        long firstDay = TimeBucketUtil.toEpochDay(startMillis);
+        long endDay = TimeBucketUtil.toEpochDay(endMillis);
+        List<String> dayLabels = dayLabels(firstDay, endDay);
+        List<UrlPeriodDataVO> result = new ArrayList<>(dayLabels.size());
+        for (long day = firstDay; day < endDay; day++) {
+            result.add(new UrlPeriodDataVO(dayLabels.get((int) (day - firstDay)), dayCount.get(day))); // 填充真实值或0
+        }
+        return result;
+    }
+
+    /**
+     * 每个小时的总访问次数（所有URL聚合）
+     */
+    private LongCountMap hourTotals() {
+        LongCountMap hourCount = new LongCountMap();
+        for (LongCountMap hours : urlHourCount.values()) {
+            hours.forEach(hourCount::add);
+        }
+        return hourCount;
+    }
+
+    /**
+     * 按总访问量降序排序，取前limit项
+     */
+    private List<UrlTotal> sortByTotalDesc(int limit) {
+        List<UrlTotal> totals = new ArrayList<>(urlHourCount.size());
+        for (Map.Entry<String, LongCountMap> e : urlHourCount.entrySet()) {
+            totals.add(new UrlTotal(e.getKey(), e.getValue().sum()));        // 每个URL的总访问量只计算一次
+        }
+        totals.sort((a, b) -> Long.compare(b.total, a.total));
+        return totals.size() > limit ? totals.subList(0, limit) : totals;
+    }
+
+    /**
+     * 生成[firstDay, endDay)范围内所有日期的字符串列表，每个日期只格式化一次
+     * 例如 2026-05-12 → 2026-05-15，共3个日期
+     */
+    private List<String> dayLabels(long firstDay, long endDay) {
+        List<String> days = new ArrayList<>((int) Math.max(0, endDay - firstDay));
+        for (long day = firstDay; day < endDay; day++) {
+            days.add(TimeBucketUtil.formatDay(day));
+        }
+        return days;
+    }
+
+    /**
+     * URL总访问量
+     */
+    private static final class UrlTotal {
+        private final String url;
+        private final long total;
+
+        private UrlTotal(String url, long total) {
+            this.url = url;
+            this.total = total;
+        }
+    }
+}
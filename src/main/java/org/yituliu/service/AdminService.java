@@ -5,43 +5,73 @@ import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.stereotype.Service;
 import org.yituliu.common.enums.ResultCode;
 import org.yituliu.common.exception.ServiceException;
+import org.yituliu.common.limiter.RateLimit;
+import org.yituliu.common.limiter.RateLimiter;
+import org.yituliu.common.utils.HyperLogLog;
 import org.yituliu.common.utils.IdGenerator;
 import org.yituliu.common.utils.IpUtil;
+import org.yituliu.common.utils.TimeBucketUtil;
+import org.yituliu.common.utils.UrlNormalizer;
 import org.yituliu.common.utils.UserAgentUtil;
 import org.yituliu.entity.dto.AccessLogDTO;
 import org.yituliu.entity.po.AccessLog;
+import org.yituliu.entity.po.AccessUrlHourly;
 import org.yituliu.entity.po.TrafficStats;
+import org.yituliu.entity.vo.AccessLogSummaryVO;
+import org.yituliu.entity.vo.RealtimeTrafficVO;
 import org.yituliu.entity.vo.UrlPeriodDataVO;
 import org.yituliu.entity.vo.UrlTotalVisitVO;
 import org.yituliu.entity.vo.UrlVisitGroupVO;
 import org.yituliu.mapper.AccessLogMapper;
 import org.yituliu.mapper.TrafficStatsMapper;
 
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 @Service
 public class AdminService {
 
-    private static final int BATCH_SIZE = 100_000;
     private static final int TOP_URL_COUNT = 30;
-    private static final SimpleDateFormat HOUR_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:00");
-    private static final SimpleDateFormat DAY_FORMAT = new SimpleDateFormat("yyyy-MM-dd");
+    private static final int TOP_TOTAL_URL_COUNT = 15;
+
+    /**
+     * 从URL草图中取出的候选URL数量，候选URL的精确访问量排序后再取Top N
+     */
+    private static final int TOP_URL_CANDIDATE_COUNT = 100;
+
+    /**
+     * 每个IP每分钟最多上报的访问日志数
+     */
+    private static final int ACCESS_LOG_LIMIT_PER_MINUTE = 120;
 
     private final AccessLogMapper accessLogMapper;
     private final TrafficStatsMapper trafficStatsMapper;
+    private final AccessRollupService accessRollupService;
+    private final AccessLogArchiveService accessLogArchiveService;
+    private final UniqueVisitorService uniqueVisitorService;
+    private final RealtimeTrafficService realtimeTrafficService;
+    private final TopUrlSketchService topUrlSketchService;
+    private final UrlDictService urlDictService;
+    private final RateLimiter rateLimiter;
     private final IdGenerator idGenerator;
 
-    public AdminService(AccessLogMapper accessLogMapper, TrafficStatsMapper trafficStatsMapper) {
+    public AdminService(AccessLogMapper accessLogMapper, TrafficStatsMapper trafficStatsMapper,
+                        AccessRollupService accessRollupService, AccessLogArchiveService accessLogArchiveService,
+                        UniqueVisitorService uniqueVisitorService, RealtimeTrafficService realtimeTrafficService,
+                        TopUrlSketchService topUrlSketchService, UrlDictService urlDictService,
+                        RateLimiter rateLimiter) {
         this.accessLogMapper = accessLogMapper;
         this.trafficStatsMapper = trafficStatsMapper;
+        this.accessRollupService = accessRollupService;
+        this.accessLogArchiveService = accessLogArchiveService;
+        this.uniqueVisitorService = uniqueVisitorService;
+        this.realtimeTrafficService = realtimeTrafficService;
+        this.topUrlSketchService = topUrlSketchService;
+        this.urlDictService = urlDictService;
+        this.rateLimiter = rateLimiter;
         this.idGenerator = new IdGenerator(1L);
     }
 
@@ -52,6 +82,9 @@ public class AdminService {
      * @param accessLog 访问日志对象
      */
     public void saveAccessLog(HttpServletRequest request, AccessLogDTO accessLogDTO) {
+        String ip = IpUtil.getIpAddress(request);
+        rateLimiter.acquire(new RateLimit("rate_limit:access_log:ip." + ip, ACCESS_LOG_LIMIT_PER_MINUTE, 60));
+
         AccessLog accessLog = new AccessLog();
 
         if (accessLog.getId() == null) {
@@ -63,16 +96,14 @@ public class AdminService {
             accessLog.setReferer("Unknown");
         }
 
-        accessLog.setUrl(accessLogDTO.getUrl());
-        if(accessLogDTO.getUrl() == null){
-            accessLogDTO.setUrl("Empty");
-        }
+        String url = UrlNormalizer.normalize(accessLogDTO.getUrl());                // 入库前标准化，去除结尾斜杠和易变参数
+        accessLog.setUrlId(urlDictService.idOf(url));                              // 只保存URL ID，URL保存在url_dict
 
         if (accessLog.getAccessTime() == null) {
             accessLog.setAccessTime(new Date());
         }
 
-        accessLog.setIp(IpUtil.getIpAddress(request));
+        accessLog.setIp(ip);
 
         accessLog.setBrowser(UserAgentUtil.getBrowser(request));
 
@@ -88,10 +119,17 @@ public class AdminService {
             accessLog.setRegion("Unknown");
         }
         accessLogMapper.insert(accessLog);
+
+        accessRollupService.increment(url, accessLog.getAccessTime());                             // 累加URL小时访问量
+        uniqueVisitorService.offer(accessLog.getIp(), accessLog.getAccessTime());                  // 记录该小时的独立访客
+        realtimeTrafficService.record(url, accessLog.getIp(), accessLog.getAccessTime().getTime()); // 累加实时滑动窗口
+        topUrlSketchService.offer(url, accessLog.getAccessTime());                                 // 累加高访问量URL草图
     }
 
     /**
      * 统计1小时内的页面浏览量和独立访客数
+     * UV由该小时所有实例合并后的HyperLogLog估计（标准误差约1.6%），HyperLogLog随统计结果一起保存，用于按任意时间范围合并统计UV
+     * 合并结果不完整或不可用时（实例中途重启、超过保留期、Redis不可用），扫描该小时的原始日志重建HyperLogLog
      * 
      * @param startTime 统计开始时间
      * @return TrafficStats 流量统计结果
@@ -107,332 +145,235 @@ public class AdminService {
         Long pageViews = accessLogMapper.countPageViews(startTime, endTime);
         
         // 统计独立访客数(UV)
-        Long uniqueVisitors = accessLogMapper.countUniqueVisitors(startTime, endTime);
+        long epochHour = TimeBucketUtil.toEpochHour(startTime.getTime());
+        HyperLogLog sketch = uniqueVisitorService.getHourSketch(epochHour);
+        if (sketch == null) {
+            HyperLogLog rebuilt = new HyperLogLog();
+            accessLogArchiveService.scan(startTime, endTime, true, (url, timeMillis, ip) -> rebuilt.offer(ip));
+            sketch = rebuilt;
+        }
         
         // 创建流量统计对象
         TrafficStats trafficStats = new TrafficStats();
         trafficStats.setId(idGenerator.nextId());
         trafficStats.setPageViews(pageViews != null ? pageViews : 0L);
-        trafficStats.setUniqueVisitors(uniqueVisitors != null ? uniqueVisitors : 0L);
+        trafficStats.setUniqueVisitors(sketch.cardinality());
+        trafficStats.setUvSketch(sketch.toBytes());
         trafficStats.setStatStartTime(startTime);
         trafficStats.setStatEndTime(endTime);
         trafficStats.setCreateTime(new Date());
         
-        // 保存统计结果到数据库
-        trafficStatsMapper.insert(trafficStats);
+        // 保存统计结果到数据库，同一小时重复统计时覆盖原结果
+        trafficStatsMapper.upsert(trafficStats);
+        uniqueVisitorService.discardHourSketch(epochHour);                     // 入库成功后才删除内存中的HyperLogLog
         
         return trafficStats;
     }
 
     /**
-     * 统计指定时间范围内每个URL每天的访问次数
-     * 分批查询数据（每批10万条），Java代码聚合，零值补齐，返回Top 30URL（按URL分组）
+     * 估计指定时间范围内的独立访客数(UV)
+     * 合并范围内每个小时的HyperLogLog，已统计的小时读取traffic_stats，尚未统计的小时读取内存，不扫描原始日志
+     * 按整点小时计算，开始时间所在的小时整体计入，结束时间所在的小时不计入
+     * 标准误差约1.6%（约95%的结果误差在±3.3%以内），UV较小时接近精确值
+     * 时间范围最大不超过30天
      *
      * @param startTime 开始时间
      * @param endTime   结束时间
-     * @return URL分组访问量列表，每个URL包含其所有天数的数据
+     * @return 独立访客数估计值
      */
-    public List<UrlVisitGroupVO> getUrlDailyVisits(Date startTime, Date endTime) {
-        long diffMillis = endTime.getTime() - startTime.getTime();            // 计算时间范围的毫秒差
-        if (diffMillis <= 0) {                                                 // 结束时间必须大于开始时间
-            throw new ServiceException(ResultCode.START_TIME_CANNOT_BE_GREATER_THAN_END_TIME);
-        }
-        if (diffMillis > 30L * 24 * 60 * 60 * 1000) {                         // 范围最大不超过30天
-            throw new ServiceException(ResultCode.DATE_RANGE_TOO_LARGE);
-        }
-
-        // url → (day → count)
-        Map<String, Map<String, Long>> urlDayCount = new HashMap<>();
-
-        long offset = 0;
-        while (true) {
-            List<AccessLog> batch = accessLogMapper.selectList(               // 每批查询10万条记录
-                    new LambdaQueryWrapper<AccessLog>()
-                            .select(AccessLog::getUrl, AccessLog::getAccessTime) // 只查url和access_time两列
-                            .ge(AccessLog::getAccessTime, startTime)          // access_time >= 开始时间
-                            .lt(AccessLog::getAccessTime, endTime)            // access_time < 结束时间
-                            .last("LIMIT " + offset + "," + BATCH_SIZE)       // 分页偏移 + 批次大小
-            );
-
-            if (batch.isEmpty()) {                                            // 无更多数据时跳出循环
-                break;
+    public Long getUniqueVisitors(Date startTime, Date endTime) {
+        validateRange(startTime, endTime);
+        long firstHour = TimeBucketUtil.toEpochHour(startTime.getTime());
+        long endHour = TimeBucketUtil.toEpochHour(endTime.getTime());
+
+        List<TrafficStats> statsList = trafficStatsMapper.selectList(new LambdaQueryWrapper<TrafficStats>()
+                .select(TrafficStats::getStatStartTime, TrafficStats::getUvSketch)
+                .ge(TrafficStats::getStatStartTime, new Date(TimeBucketUtil.toMillis(firstHour)))
+                .lt(TrafficStats::getStatStartTime, new Date(TimeBucketUtil.toMillis(endHour))));
+
+        HyperLogLog merged = new HyperLogLog();
+        Set<Long> storedHours = new HashSet<>();
+        for (TrafficStats stats : statsList) {
+            if (stats.getUvSketch() != null) {                                 // 旧数据没有HyperLogLog
+                merged.merge(HyperLogLog.fromBytes(stats.getUvSketch()));
+                storedHours.add(TimeBucketUtil.toEpochHour(stats.getStatStartTime().getTime()));
             }
-
-            for (AccessLog log : batch) {                                     // 逐条聚合到内存Map
-                String url = normalizeUrl(log.getUrl());                     // 标准化URL，去除结尾斜杠
-                String day = DAY_FORMAT.format(log.getAccessTime());          // 格式化到天级别，如 2026-05-12
-                urlDayCount
-                        .computeIfAbsent(url, k -> new HashMap<>())           // 该URL首次出现时创建内部Map
-                        .merge(day, 1L, Long::sum);                          // 累计该天的访问次数
+        }
+        for (long hour = firstHour; hour < endHour; hour++) {                 // 合并尚未统计入库的小时
+            HyperLogLog sketch = storedHours.contains(hour) ? null : uniqueVisitorService.peekHourSketch(hour);
+            if (sketch != null) {
+                merged.merge(sketch);
             }
-
-            offset += BATCH_SIZE;                                             // 偏移量递增，进入下一批
         }
+        return merged.cardinality();
+    }
 
-        // 按总访问量降序排序，取前30个URL
-        List<String> topUrls = urlDayCount.entrySet().stream()
-                .sorted((a, b) -> Long.compare(                               // 按总访问量降序
-                        b.getValue().values().stream().mapToLong(Long::longValue).sum(),
-                        a.getValue().values().stream().mapToLong(Long::longValue).sum()))
-                .limit(TOP_URL_COUNT)                                         // 只取前30个
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toList());
-
-        // 生成时间范围内全部日期列表（yyyy-MM-dd）
-        List<String> allDays = generateAllDays(startTime, endTime);
-
-        // 展开：每个Top URL → 一个分组对象，包含所有小时段和每日的数据，无数据的填0
-        List<UrlVisitGroupVO> result = new ArrayList<>(topUrls.size());
-        for (String url : topUrls) {
-            Map<String, Long> dayCount = urlDayCount.getOrDefault(url, Collections.emptyMap());
-            List<UrlPeriodDataVO> dataList = new ArrayList<>(allDays.size());
-            for (String day : allDays) {
-                dataList.add(new UrlPeriodDataVO(day, dayCount.getOrDefault(day, 0L))); // 时间段数据
-            }
-            result.add(new UrlVisitGroupVO(url, dataList));                  // 每个URL一个分组
+    /**
+     * 获取最近N分钟和最近N小时的实时流量，直接读取内存中的滑动窗口，不访问数据库
+     * 数据只包含本实例启动后的访问
+     *
+     * @param minutes 最近分钟数，1-60
+     * @param hours   最近小时数，1-24
+     * @return 实时流量统计
+     */
+    public RealtimeTrafficVO getRealtimeTraffic(int minutes, int hours) {
+        if (minutes < 1 || minutes > RealtimeTrafficService.MINUTE_SLOTS
+                || hours < 1 || hours > RealtimeTrafficService.HOUR_SLOTS) {
+            throw new ServiceException(ResultCode.PARAM_IS_INVALID);
         }
+        return new RealtimeTrafficVO(realtimeTrafficService.lastMinutes(minutes), realtimeTrafficService.lastHours(hours));
+    }
 
-        return result;
+    /**
+     * 统计指定时间范围内每个URL每天的访问次数
+     * 默认由URL草图选出候选URL，再从URL小时预聚合表读取候选URL的精确访问量（服务启动前的时间段读取全部URL）
+     * exact为true时扫描原始日志（已归档的日期读取归档文件），用于核对
+     * Java代码聚合，零值补齐，返回Top 30URL（按URL分组）
+     *
+     * @param startTime 开始时间
+     * @param endTime   结束时间
+     * @param exact     是否扫描原始日志精确统计
+     * @return URL分组访问量列表，每个URL包含其所有天数的数据
+     */
+    public List<UrlVisitGroupVO> getUrlDailyVisits(Date startTime, Date endTime, boolean exact) {
+        AccessVisitAggregator candidates = exact ? null : aggregateTopCandidates(startTime, endTime);
+        if (candidates != null) {
+            return candidates.toUrlDailyVisits(TOP_URL_COUNT);
+        }
+        return aggregateVisits(startTime, endTime, exact).toUrlDailyVisits(TOP_URL_COUNT);
     }
 
     /**
      * 统计指定时间范围内每个URL的总访问次数
-     * 分批查询（每批10万条），Java代码聚合，返回全部URL
+     * 默认由URL草图选出候选URL，再从URL小时预聚合表读取候选URL的精确访问量（服务启动前的时间段读取全部URL）
+     * exact为true时扫描原始日志（已归档的日期读取归档文件），Java代码聚合，返回全部URL
      * Top 15 单独列出，其余合并为"其他"，第一项固定为"访问总和"
      *
      * @param startTime 开始时间
      * @param endTime   结束时间
+     * @param exact     是否扫描原始日志精确统计
      * @return URL总访问量列表
      */
-    public List<UrlTotalVisitVO> getUrlTotalVisits(Date startTime, Date endTime) {
-        long diffMillis = endTime.getTime() - startTime.getTime();            // 计算时间范围的毫秒差
-        if (diffMillis <= 0) {                                                 // 结束时间必须大于开始时间
-            throw new ServiceException(ResultCode.START_TIME_CANNOT_BE_GREATER_THAN_END_TIME);
-        }
-        if (diffMillis > 30L * 24 * 60 * 60 * 1000) {                        // 范围最大不超过30天
-            throw new ServiceException(ResultCode.DATE_RANGE_TOO_LARGE);
-        }
-
-        Map<String, Long> urlCount = new HashMap<>();                         // url → 总访问次数
-
-        long offset = 0;
-        while (true) {
-            List<AccessLog> batch = accessLogMapper.selectList(               // 每批查询10万条记录
-                    new LambdaQueryWrapper<AccessLog>()
-                            .select(AccessLog::getUrl)                         // 只查url一列
-                            .ge(AccessLog::getAccessTime, startTime)          // access_time >= 开始时间
-                            .lt(AccessLog::getAccessTime, endTime)            // access_time < 结束时间
-                            .last("LIMIT " + offset + "," + BATCH_SIZE)       // 分页偏移 + 批次大小
-            );
-
-            if (batch.isEmpty()) {                                            // 无更多数据时跳出循环
-                break;
-            }
-
-            for (AccessLog log : batch) {                                     // 逐条聚合
-                String url = normalizeUrl(log.getUrl());                     // 标准化URL，去除结尾斜杠
-                urlCount.merge(url, 1L, Long::sum);                          // 累计访问次数
-            }
-
-            offset += BATCH_SIZE;                                             // 偏移量递增
+    public List<UrlTotalVisitVO> getUrlTotalVisits(Date startTime, Date endTime, boolean exact) {
+        AccessVisitAggregator candidates = exact ? null : aggregateTopCandidates(startTime, endTime);
+        if (candidates != null) {
+            return candidates.toUrlTotalVisits(TOP_TOTAL_URL_COUNT, accessRollupService.sumPv(startTime, endTime));
         }
-
-        // 按总访问量降序排序全部URL
-        List<Map.Entry<String, Long>> sortedEntries = urlCount.entrySet().stream()
-                .sorted(Map.Entry.<String, Long>comparingByValue().reversed()) // 按总访问量降序
-                .collect(Collectors.toList());
-
-        List<UrlTotalVisitVO> result = new ArrayList<>();
-
-        // Top 15 单独列出
-        for (int i = 0; i < Math.min(15, sortedEntries.size()); i++) {
-            Map.Entry<String, Long> e = sortedEntries.get(i);
-            result.add(new UrlTotalVisitVO(e.getKey(), e.getValue()));
-        }
-
-        // 剩余URL合并为"其他"
-        if (sortedEntries.size() > 15) {
-            long otherCount = 0;
-            for (int i = 15; i < sortedEntries.size(); i++) {
-                otherCount += sortedEntries.get(i).getValue();
-            }
-            result.add(new UrlTotalVisitVO("其他", otherCount));
-        }
-
-        long total = urlCount.values().stream().mapToLong(Long::longValue).sum(); // 所有URL访问量总和
-        result.add(0, new UrlTotalVisitVO("访问总和", total));               // 插入到列表第一项
-
-        return result;
+        return aggregateVisits(startTime, endTime, exact).toUrlTotalVisits(TOP_TOTAL_URL_COUNT);
     }
 
     /**
      * 统计指定时间范围内每小时的总访问量（所有URL聚合）
-     * 分批查询（每批10万条），Java代码聚合，零值补齐
+     * 默认读取URL小时预聚合表，exact为true时扫描原始日志（已归档的日期读取归档文件），Java代码聚合，零值补齐
      * 时间范围最大不超过30天
      *
      * @param startTime 开始时间
      * @param endTime   结束时间
+     * @param exact     是否扫描原始日志精确统计
      * @return 每小时总访问量列表
      */
-    public List<UrlPeriodDataVO> getHourlyTotalVisits(Date startTime, Date endTime) {
-        long diffMillis = endTime.getTime() - startTime.getTime();            // 计算时间范围的毫秒差
-        if (diffMillis <= 0) {                                                 // 结束时间必须大于开始时间
-            throw new ServiceException(ResultCode.START_TIME_CANNOT_BE_GREATER_THAN_END_TIME);
-        }
-        if (diffMillis > 30L * 24 * 60 * 60 * 1000) {                        // 范围最大不超过30天
-            throw new ServiceException(ResultCode.DATE_RANGE_TOO_LARGE);
-        }
-
-        Map<String, Long> hourCount = new HashMap<>();                        // hour → 总访问次数
-
-        long offset = 0;
-        while (true) {
-            List<AccessLog> batch = accessLogMapper.selectList(               // 每批查询10万条记录
-                    new LambdaQueryWrapper<AccessLog>()
-                            .select(AccessLog::getAccessTime)                  // 只查access_time一列
-                            .ge(AccessLog::getAccessTime, startTime)          // access_time >= 开始时间
-                            .lt(AccessLog::getAccessTime, endTime)            // access_time < 结束时间
-                            .last("LIMIT " + offset + "," + BATCH_SIZE)       // 分页偏移 + 批次大小
-            );
-
-            if (batch.isEmpty()) {                                            // 无更多数据时跳出循环
-                break;
-            }
-
-            for (AccessLog log : batch) {                                     // 逐条聚合，按小时累计
-                String hour = HOUR_FORMAT.format(log.getAccessTime());        // 格式化到小时级别
-                hourCount.merge(hour, 1L, Long::sum);                        // 累计该小时的访问次数
-            }
-
-            offset += BATCH_SIZE;                                             // 偏移量递增
-        }
-
-        // 生成时间范围内全部整点小时列表，无数据的小时填0
-        List<String> allHours = generateAllHours(startTime, endTime);
-        List<UrlPeriodDataVO> result = new ArrayList<>(allHours.size());
-        for (String hour : allHours) {
-            result.add(new UrlPeriodDataVO(hour, hourCount.getOrDefault(hour, 0L))); // 填充真实值或0
-        }
-
-        return result;
+    public List<UrlPeriodDataVO> getHourlyTotalVisits(Date startTime, Date endTime, boolean exact) {
+        return aggregateVisits(startTime, endTime, exact).toHourlyTotalVisits();
     }
 
     /**
      * 统计指定时间范围内每日的总访问量（所有URL聚合）
-     * 分批查询（每批10万条），Java代码聚合，零值补齐
+     * 默认读取URL小时预聚合表，exact为true时扫描原始日志（已归档的日期读取归档文件），Java代码聚合，零值补齐
      * 时间范围最大不超过30天
      *
      * @param startTime 开始时间
      * @param endTime   结束时间
+     * @param exact     是否扫描原始日志精确统计
      * @return 每日总访问量列表
      */
-    public List<UrlPeriodDataVO> getDailyTotalVisits(Date startTime, Date endTime) {
-        long diffMillis = endTime.getTime() - startTime.getTime();            // 计算时间范围的毫秒差
-        if (diffMillis <= 0) {                                                 // 结束时间必须大于开始时间
-            throw new ServiceException(ResultCode.START_TIME_CANNOT_BE_GREATER_THAN_END_TIME);
-        }
-        if (diffMillis > 30L * 24 * 60 * 60 * 1000) {                        // 范围最大不超过30天
-            throw new ServiceException(ResultCode.DATE_RANGE_TOO_LARGE);
-        }
-
-        Map<String, Long> dayCount = new HashMap<>();                         // day → 总访问次数
+    public List<UrlPeriodDataVO> getDailyTotalVisits(Date startTime, Date endTime, boolean exact) {
+        return aggregateVisits(startTime, endTime, exact).toDailyTotalVisits();
+    }
 
-        long offset = 0;
-        while (true) {
-            List<AccessLog> batch = accessLogMapper.selectList(               // 每批查询10万条记录
-                    new LambdaQueryWrapper<AccessLog>()
-                            .select(AccessLog::getAccessTime)                  // 只查access_time一列
-                            .ge(AccessLog::getAccessTime, startTime)          // access_time >= 开始时间
-                            .lt(AccessLog::getAccessTime, endTime)            // access_time < 结束时间
-                            .last("LIMIT " + offset + "," + BATCH_SIZE)       // 分页偏移 + 批次大小
-            );
+    /**
+     * 一次遍历同时统计指定时间范围内的URL每日访问量、URL总访问量、每小时总访问量、每日总访问量
+     * 后台看板加载时只需遍历一次数据，结果与四个单独接口一致
+     * 时间范围最大不超过30天
+     *
+     * @param startTime 开始时间
+     * @param endTime   结束时间
+     * @param exact     是否扫描原始日志精确统计
+     * @return 访问量汇总统计
+     */
+    public AccessLogSummaryVO getAccessLogSummary(Date startTime, Date endTime, boolean exact) {
+        AccessVisitAggregator aggregator = aggregateVisits(startTime, endTime, exact);
+        return new AccessLogSummaryVO(
+                aggregator.toUrlDailyVisits(TOP_URL_COUNT),
+                aggregator.toUrlTotalVisits(TOP_TOTAL_URL_COUNT),
+                aggregator.toHourlyTotalVisits(),
+                aggregator.toDailyTotalVisits());
+    }
 
-            if (batch.isEmpty()) {                                            // 无更多数据时跳出循环
-                break;
-            }
+    /**
+     * 校验时间范围并遍历一次访问记录，按(url, epoch小时)聚合
+     * exact为false时读取URL小时预聚合表，每行为一个(url, 整点小时, 访问次数)
+     * exact为true时按(access_time, id)游标分批扫描access_log原始日志（已归档的日期读取归档文件），每行为一个(url, 访问时间, 1)
+     */
+    private AccessVisitAggregator aggregateVisits(Date startTime, Date endTime, boolean exact) {
+        validateRange(startTime, endTime);
 
-            for (AccessLog log : batch) {                                     // 逐条聚合，按天累计
-                String day = DAY_FORMAT.format(log.getAccessTime());          // 格式化到天级别
-                dayCount.merge(day, 1L, Long::sum);                           // 累计该天的访问次数
+        AccessVisitAggregator aggregator = new AccessVisitAggregator(startTime, endTime);
+        if (!exact) {
+            for (AccessUrlHourly row : accessRollupService.listUrlHourly(startTime, endTime)) {
+                aggregator.add(row.getUrl(), row.getHour().getTime(), row.getPv());
             }
-
-            offset += BATCH_SIZE;                                             // 偏移量递增
+            return aggregator;
         }
 
-        // 生成时间范围内全部日期列表，无数据的日期填0
-        List<String> allDays = generateAllDays(startTime, endTime);
-        List<UrlPeriodDataVO> result = new ArrayList<>(allDays.size());
-        for (String day : allDays) {
-            result.add(new UrlPeriodDataVO(day, dayCount.getOrDefault(day, 0L))); // 填充真实值或0
-        }
-
-        return result;
+        accessLogArchiveService.scan(startTime, endTime, false,              // 已归档的日期读取归档文件，其余游标分批扫描
+                (url, timeMillis, ip) -> aggregator.add(url, timeMillis, 1L));
+        return aggregator;
     }
 
     /**
-     * 生成时间范围内所有整点小时的时间字符串列表
-     * 例如 2026-05-12 10:00 → 2026-05-14 12:00，共50个小时
+     * 从URL草图取出时间范围内的候选URL，只聚合候选URL在预聚合表中的精确访问量
+     * 内存占用与候选URL数量成正比，与范围内不重复URL的数量无关
+     *
+     * @return 只包含候选URL的聚合器，草图不能覆盖时间范围时返回null
      */
-    private List<String> generateAllHours(Date startTime, Date endTime) {
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(startTime);
-        cal.set(Calendar.MINUTE, 0);                                          // 对齐到整点
-        cal.set(Calendar.SECOND, 0);
-        cal.set(Calendar.MILLISECOND, 0);
-
-        Calendar end = Calendar.getInstance();
-        end.setTime(endTime);
-        end.set(Calendar.MINUTE, 0);
-        end.set(Calendar.SECOND, 0);
-        end.set(Calendar.MILLISECOND, 0);
-
-        List<String> hours = new ArrayList<>();
-        while (cal.before(end)) {                                             // 遍历每个整点直到结束时间
-            hours.add(HOUR_FORMAT.format(cal.getTime()));
-            cal.add(Calendar.HOUR_OF_DAY, 1);                                 // 下移1小时
+    private AccessVisitAggregator aggregateTopCandidates(Date startTime, Date endTime) {
+        validateRange(startTime, endTime);
+        List<String> candidates = topUrlSketchService.topCandidates(startTime, endTime, TOP_URL_CANDIDATE_COUNT);
+        if (candidates == null) {
+            return null;                                                       // 服务启动前的时间段回退到完整聚合
+        }
+        AccessVisitAggregator aggregator = new AccessVisitAggregator(startTime, endTime);
+        for (AccessUrlHourly row : accessRollupService.listUrlHourly(startTime, endTime, candidates)) {
+            aggregator.add(row.getUrl(), row.getHour().getTime(), row.getPv());
         }
-        return hours;
+        return aggregator;
     }
 
     /**
-     * 生成时间范围内所有日期的字符串列表
-     * 例如 2026-05-12 → 2026-05-15，共4个日期
+     * 扫描原始日志重建指定时间范围内的URL小时预聚合数据，覆盖已有数据，时间范围最大不超过30天
+     * 每次调用需要扫描整个时间范围的原始日志，全局每分钟最多调用一次
+     *
+     * @param startTime 开始时间
+     * @param endTime   结束时间
+     * @return 写入的行数
      */
-    private List<String> generateAllDays(Date startTime, Date endTime) {
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(startTime);
-        cal.set(Calendar.HOUR_OF_DAY, 0);                                     // 对齐到当天0点
-        cal.set(Calendar.MINUTE, 0);
-        cal.set(Calendar.SECOND, 0);
-        cal.set(Calendar.MILLISECOND, 0);
-
-        Calendar end = Calendar.getInstance();
-        end.setTime(endTime);
-        end.set(Calendar.HOUR_OF_DAY, 0);
-        end.set(Calendar.MINUTE, 0);
-        end.set(Calendar.SECOND, 0);
-        end.set(Calendar.MILLISECOND, 0);
-
-        List<String> days = new ArrayList<>();
-        while (cal.before(end)) {                                             // 遍历每个日期直到结束时间
-            days.add(DAY_FORMAT.format(cal.getTime()));
-            cal.add(Calendar.DAY_OF_YEAR, 1);                                 // 下移1天
-        }
-        return days;
+    public int rebuildUrlHourly(Date startTime, Date endTime) {
+        validateRange(startTime, endTime);
+        rateLimiter.acquire(new RateLimit("rate_limit:url_hourly_rebuild:global", 1, 60));
+        return accessRollupService.rebuild(startTime, endTime);
     }
 
     /**
-     * 标准化URL，去除结尾斜杠，统一同一路径的带/不带/写法
-     * 例如 "/tools/essence-calculator/" → "/tools/essence-calculator"
+     * 校验时间范围，结束时间必须大于开始时间，范围最大不超过30天
      */
-    private String normalizeUrl(String url) {
-        if (url == null) {
-            return "Unknown";                                                  // URL为空时记为Unknown
+    private void validateRange(Date startTime, Date endTime) {
+        long diffMillis = endTime.getTime() - startTime.getTime();            // 计算时间范围的毫秒差
+        if (diffMillis <= 0) {                                                 // 结束时间必须大于开始时间
+            throw new ServiceException(ResultCode.START_TIME_CANNOT_BE_GREATER_THAN_END_TIME);
         }
-        if (url.length() > 1 && url.endsWith("/")) {                         // 长度>1 避免把根路径"/"也去掉
-            return url.substring(0, url.length() - 1);                       // 去掉结尾斜杠
+        if (diffMillis > 30L * 24 * 60 * 60 * 1000) {                        // 范围最大不超过30天
+            throw new ServiceException(ResultCode.DATE_RANGE_TOO_LARGE);
         }
-        return url;
     }
 
 }
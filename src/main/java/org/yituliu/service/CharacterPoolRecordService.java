@@ -1,19 +1,19 @@
 package org.yituliu.service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.yituliu.common.enums.ResultCode;
 import org.yituliu.common.exception.ServiceException;
 import org.yituliu.common.utils.*;
-import org.yituliu.entity.dto.pool.record.CharacterPoolRecordDTO;
-import org.yituliu.entity.dto.pool.record.CharacterPoolRecordResponseDTO;
+import org.yituliu.entity.dto.pool.record.PoolRecordPageDTO;
 import org.yituliu.entity.po.CharacterPoolRecord;
 import org.yituliu.entity.dto.pool.record.EndfieldUserInfoDTO;
 import org.yituliu.entity.po.EndministratorInfo;
+import org.yituliu.entity.po.PlayerImportState;
 import org.yituliu.entity.po.PlayerPoolRecordTask;
 import org.yituliu.mapper.CharacterPoolRecordMapper;
 
@@ -22,7 +22,6 @@ import org.yituliu.mapper.EndministratorInfoMapper;
 import org.yituliu.mapper.PlayerPoolRecordTaskMapper;
 
 
-import java.io.IOException;
 import java.sql.SQLException;
 import java.util.*;
 import java.util.concurrent.*;
@@ -30,8 +29,6 @@ import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
-import static org.yituliu.common.utils.UrlEncodeUtil.smartUrlEncode;
-
 @Service
 public class CharacterPoolRecordService {
 
@@ -57,6 +54,9 @@ public class CharacterPoolRecordService {
     private final CharacterPoolRecordMapper characterPoolRecordMapper;
     private final IdGenerator idGenerator;
     private final Executor asyncExecutor;
+    private final PlayerImportStateService playerImportStateService;
+    private final TransactionTemplate transactionTemplate;
+    private final PoolRecordApiClient poolRecordApiClient;
 
 
     // 性能监控相关计数器
@@ -70,8 +70,14 @@ public class CharacterPoolRecordService {
     private final AtomicInteger activeTasks = new AtomicInteger(0);
 
     public CharacterPoolRecordService(CharacterPoolRecordMapper characterPoolRecordMapper,
-                                      @Qualifier("asyncExecutor") Executor asyncExecutor) {
+                                      @Qualifier("asyncExecutor") Executor asyncExecutor,
+                                      PlayerImportStateService playerImportStateService,
+                                      TransactionTemplate transactionTemplate,
+                                      PoolRecordApiClient poolRecordApiClient) {
         this.characterPoolRecordMapper = characterPoolRecordMapper;
+        this.playerImportStateService = playerImportStateService;
+        this.transactionTemplate = transactionTemplate;
+        this.poolRecordApiClient = poolRecordApiClient;
         this.idGenerator = new IdGenerator(1L);
         this.asyncExecutor = asyncExecutor;  // 赋值给实例变量
 
@@ -95,49 +101,50 @@ public class CharacterPoolRecordService {
         LogUtils.info("roleId：{} 开始处理角色抽卡记录导入任务，耗时：{} ms", roleId, System.currentTimeMillis() - startTime);
         //要持久化到数据库的干员寻访记录列表
         ArrayList<CharacterPoolRecord> characterPoolRecordList = new ArrayList<>();
-        //查询当前uid的历史干员寻访记录的最大seq_id，减少重复导入的情况
-        Integer characterPoolRecordExistingMaxSeqId = characterPoolRecordMapper.getMaxSeqIdNumber(roleId);
+        //读取各卡池的导入状态，旧玩家没有导入状态时从已有记录初始化
+        Map<String, PlayerImportState> importStates = playerImportStateService.getStates(roleId);
+        if (!importStates.containsKey(STANDARD_POOL_TYPE)) {
+            importStates = initImportStates(roleId);
+        }
+        //当前uid的历史干员寻访记录的最大seq_id，减少重复导入的情况
+        Integer characterPoolRecordExistingMaxSeqId = PlayerImportStateService.maxSeqId(importStates.values());
+        //本次导入各卡池第一页第一条记录的seq_id
+        Map<String, Integer> headSeqIds = new HashMap<>();
 
         // 并发处理所有池类型：为每个卡池类型创建异步任务
-        List<CompletableFuture<CharacterPoolRecordResponseDTO>> characterPoolRecordFutures = new ArrayList<>();
+        List<CompletableFuture<PoolRecordPageDTO<CharacterPoolRecord>>> characterPoolRecordFutures = new ArrayList<>();
 
 
-        LambdaQueryWrapper<CharacterPoolRecord> beginnerPoolWrapper = new LambdaQueryWrapper<>();
-        beginnerPoolWrapper.eq(CharacterPoolRecord::getRoleId, roleId);
-        beginnerPoolWrapper.eq(CharacterPoolRecord::getPoolType, BEGINNER_POOL_TYPE);
-        Long beginnerPoolRecordCount = characterPoolRecordMapper.selectCount(beginnerPoolWrapper);
+        PlayerImportState beginnerPoolState = importStates.get(BEGINNER_POOL_TYPE);
 
         int characterPoolRecordListSize = 10;
         // 创建 List
         List<String> poolTypes = new ArrayList<>();
         poolTypes.add(STANDARD_POOL_TYPE);
         poolTypes.add(SPECIAL_POOL_TYPE);
-        if (beginnerPoolRecordCount < 40) {
+        if (beginnerPoolState == null || !Boolean.TRUE.equals(beginnerPoolState.getBeginnerComplete())) {
             poolTypes.add(BEGINNER_POOL_TYPE);
         }
 
+        PoolRecordApiClient.Session session = poolRecordApiClient.session(u8Token, roleId);
         try {
             LogUtils.info("roleId：{} 开始创建干员卡池异步请求任务，耗时：{} ms", roleId, System.currentTimeMillis() - startTime);
             // 遍历所有卡池类型，为每种类型创建异步处理任务
             for (String poolType : poolTypes) {
                 //不传入seq_id，获取第一页寻访记录的最后一个seq_id
-                CharacterPoolRecordResponseDTO characterPoolRecordResponseDTO =
-                        requestCharacterPoolRecordAPI(u8Token, poolType, null);
-
-                List<CharacterPoolRecordDTO> characterPoolRecordDTOList =
-                        characterPoolRecordResponseDTO.getData().getList();
+                List<CharacterPoolRecord> firstPageRecords =
+                        session.characterRecords(poolType, null).join().getList();
 
                 //将获取到寻访记录插入到持久化对象集合中
-                characterPoolRecordDTOList.forEach(e -> {
-                    characterPoolRecordList.add(convertToEntity(e, roleId, SERVER_ID, poolType));
-                });
+                characterPoolRecordList.addAll(firstPageRecords);
 
                 //持久化对象集合的长度增加
-                characterPoolRecordListSize += characterPoolRecordDTOList.size();
+                characterPoolRecordListSize += firstPageRecords.size();
+                headSeqIds.put(poolType, Integer.valueOf(firstPageRecords.get(0).getSeqId()));
 
                 //获取第一页寻访记录的最后一个seq_id
-                String lastSeqId = characterPoolRecordDTOList
-                        .get(characterPoolRecordDTOList.size() - 1)
+                String lastSeqId = firstPageRecords
+                        .get(firstPageRecords.size() - 1)
                         .getSeqId();
 
                 LogUtils.info("roleId：{} ，{}最大的seq_id：{}，耗时：{} ms",
@@ -150,10 +157,7 @@ public class CharacterPoolRecordService {
                 characterPoolRecordListSize += seqIdList.size() * 5;
                 //创建查询请求队列
                 for (String seqId : seqIdList) {
-                    CompletableFuture<CharacterPoolRecordResponseDTO> future = CompletableFuture
-                            .supplyAsync(() ->
-                                    requestCharacterPoolRecordAPI(u8Token, poolType, seqId), asyncExecutor);
-                    characterPoolRecordFutures.add(future);
+                    characterPoolRecordFutures.add(session.characterRecords(poolType, seqId));
                 }
             }
 
@@ -174,20 +178,16 @@ public class CharacterPoolRecordService {
                     .thenApply(v -> {
                         // 创建用于存储所有结果的列表
                         // 遍历所有异步任务的future对象
-                        for (CompletableFuture<CharacterPoolRecordResponseDTO> future : characterPoolRecordFutures) {
+                        for (CompletableFuture<PoolRecordPageDTO<CharacterPoolRecord>> future : characterPoolRecordFutures) {
                             try {
                                 // future.get()：阻塞获取单个异步任务的结果
-                                // 这里每个future的结果是List<CharacterPoolRecordDTO>类型
-                                CharacterPoolRecordResponseDTO futureResult = future.get();
+                                // 这里每个future的结果是一页已解析为持久化对象的寻访记录
+                                PoolRecordPageDTO<CharacterPoolRecord> futureResult = future.get();
                                 if (0 != futureResult.getCode()) {
                                     continue;
                                 }
-                                List<CharacterPoolRecordDTO> characterPoolRecordDTOList = futureResult.getData().getList();
                                 // 将单个任务的结果合并到总结果列表中
-                                // 使用普通for循环代替流处理，减少流的开销
-                                for (CharacterPoolRecordDTO dto : characterPoolRecordDTOList) {
-                                    characterPoolRecordList.add(convertToEntity(dto, roleId, SERVER_ID, futureResult.getPoolType()));
-                                }
+                                characterPoolRecordList.addAll(futureResult.getList());
 
                             } catch (InterruptedException e) {
                                 // 处理线程中断异常
@@ -224,12 +224,40 @@ public class CharacterPoolRecordService {
         }
 
         LogUtils.info("roleId: {} 开始插入干员寻访记录数据到数据库 耗时: {} ms", roleId, System.currentTimeMillis() - startTime);
-        // 批量插入数据库 - 利用数据库唯一约束：将收集到的所有记录批量插入数据库
-        batchInsertWithUniqueIndex(characterPoolRecordList);
+        // 计算导入后的状态：按卡池分组本次获取到的记录
+        Map<String, List<String>> seqIdsByPoolType = PlayerImportStateService.groupSeqIds(characterPoolRecordList,
+                CharacterPoolRecord::getPoolType, CharacterPoolRecord::getSeqId);
+        List<PlayerImportState> newImportStates = new ArrayList<>();
+        for (String poolType : List.of(STANDARD_POOL_TYPE, SPECIAL_POOL_TYPE, BEGINNER_POOL_TYPE)) {
+            newImportStates.add(PlayerImportStateService.advance(roleId, poolType, importStates.get(poolType),
+                    headSeqIds.get(poolType), seqIdsByPoolType.getOrDefault(poolType, List.of()),
+                    characterPoolRecordExistingMaxSeqId, BEGINNER_POOL_TYPE.equals(poolType)));
+        }
+        // 批量插入数据库 - 利用数据库唯一约束：将收集到的所有记录批量插入数据库，导入状态在同一事务中更新
+        transactionTemplate.executeWithoutResult(status -> {
+            batchInsertWithUniqueIndex(characterPoolRecordList);
+            playerImportStateService.save(newImportStates);
+        });
         LogUtils.info("roleId：{} 干员寻访记录数据全部插入 耗时: {} ms", roleId, System.currentTimeMillis() - startTime);
     }
 
 
+    /**
+     * 根据已有的干员寻访记录初始化导入状态，每个玩家只执行一次
+     */
+    private Map<String, PlayerImportState> initImportStates(String roleId) {
+        Map<String, Integer> recordCounts = new LinkedHashMap<>();
+        for (String poolType : List.of(STANDARD_POOL_TYPE, SPECIAL_POOL_TYPE, BEGINNER_POOL_TYPE)) {
+            LambdaQueryWrapper<CharacterPoolRecord> poolWrapper = new LambdaQueryWrapper<>();
+            poolWrapper.eq(CharacterPoolRecord::getRoleId, roleId);
+            poolWrapper.eq(CharacterPoolRecord::getPoolType, poolType);
+            recordCounts.put(poolType, characterPoolRecordMapper.selectCount(poolWrapper).intValue());
+        }
+        return PlayerImportStateService.initialStates(roleId, characterPoolRecordMapper.getMaxSeqIdNumber(roleId),
+                recordCounts, BEGINNER_POOL_TYPE);
+    }
+
+
     public List<CharacterPoolRecord> getCharacterPoolRecordByTaskId(String roleId){
 
         LambdaQueryWrapper<CharacterPoolRecord> queryWrapper = new LambdaQueryWrapper<>();
@@ -318,69 +346,4 @@ public class CharacterPoolRecordService {
     }
 
 
-    /**
-     * 请求API
-     */
-    private CharacterPoolRecordResponseDTO requestCharacterPoolRecordAPI(String u8Token, String poolType, String seqId) {
-        // 记录任务开始时间，用于计算处理耗时
-        long startTime = System.currentTimeMillis();
-        String encodeToken = smartUrlEncode(u8Token);
-//        String encodeToken =    token;
-
-        String CHARACTER_RECORD_API = "https://ef-webview.hypergryph.com/api/record/char";
-        String url = CHARACTER_RECORD_API + "?lang=" + LANG + "&pool_type=" + poolType + "&token=" + encodeToken + "&server_id=" + SERVER_ID;
-        if (seqId != null) {
-            url += "&seq_id=" + seqId;
-        }
-
-//        // 打印URL中?之后的参数字符串
-//        if (url.contains("?")) {
-//            String queryString = url.substring(url.indexOf("?") + 1);
-//            LogUtils.info("API请求URL参数: {}", queryString);
-//        }
-
-        Map<String, String> headers = PoolRecordTaskUtil.getHeader();
-
-        try {
-            String response = OkHttpUtil.getWithHeaders(url, headers);
-            CharacterPoolRecordResponseDTO characterPoolRecordResponseDTO = JsonMapper.parseObject(response, new TypeReference<>() {
-            });
-
-            if (characterPoolRecordResponseDTO == null || characterPoolRecordResponseDTO.getData() == null
-                    || characterPoolRecordResponseDTO.getData().getList() == null || characterPoolRecordResponseDTO.getData().getList().isEmpty()) {
-                return new CharacterPoolRecordResponseDTO(500, null, "请求终末地角色抽卡记录失败", poolType);
-            }
-            characterPoolRecordResponseDTO.setPoolType(poolType);
-            return characterPoolRecordResponseDTO;
-        } catch (IOException e) {
-            LogUtils.error("API请求失败: {}", url, e);
-            throw new RuntimeException("API请求失败", e);
-        }
-    }
-
-
-    /**
-     * 转换DTO到实体
-     */
-    private CharacterPoolRecord convertToEntity(CharacterPoolRecordDTO dto, String roleId, String serverId, String poolType) {
-        // 优化：使用全参构造器代替13次set方法调用，减少方法调用开销
-        return new CharacterPoolRecord(
-                idGenerator.nextId(),  // ID
-                roleId,                 // roleId
-                dto.getPoolId(),     // poolId
-                dto.getPoolName(),   // poolName
-                dto.getCharId(),     // charId
-                dto.getCharName(),   // charName
-                dto.getRarity(),     // rarity
-                dto.getIsFree(),     // isFree
-                dto.getIsNew(),      // isNew
-                dto.getGachaTs(),    // gachaTs
-                dto.getSeqId(),      // seqId
-                LANG,               // lang
-                poolType,           // poolType
-                serverId            // serverId
-        );
-    }
-
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,147 @@
+package org.yituliu.service;
+
+import org.springframework.stereotype.Service;
+import org.yituliu.entity.po.PlayerImportState;
+import org.yituliu.mapper.PlayerImportStateMapper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 玩家导入状态服务
+ * 每个玩家每种卡池保存已导入的最大seq_id、记录数和新手池是否抽完，导入开始时只需按主键读取一次
+ * 寻访记录的seq_id在同一类记录（干员/武器）内全局递增，seq_id大于导入前最大seq_id的记录即为新增记录
+ */
+@Service
+public class PlayerImportStateService {
+
+    /**
+     * 新手池的抽数上限，达到后不再请求新手池
+     */
+    public static final int BEGINNER_POOL_SIZE = 40;
+
+    private final PlayerImportStateMapper playerImportStateMapper;
+
+    public PlayerImportStateService(PlayerImportStateMapper playerImportStateMapper) {
+        this.playerImportStateMapper = playerImportStateMapper;
+    }
+
+    /**
+     * 查询玩家所有卡池的导入状态
+     *
+     * @param roleId 玩家roleId
+     * @return 卡池类型 → 导入状态
+     */
+    public Map<String, PlayerImportState> getStates(String roleId) {
+        Map<String, PlayerImportState> states = new LinkedHashMap<>();
+        for (PlayerImportState state : playerImportStateMapper.selectByRoleId(roleId)) {
+            states.put(state.getPoolType(), state);
+        }
+        return states;
+    }
+
+    /**
+     * 保存导入状态，需要与寻访记录在同一事务中调用
+     *
+     * @param states 本次导入后的状态
+     */
+    public void save(List<PlayerImportState> states) {
+        if (!states.isEmpty()) {
+            playerImportStateMapper.upsertBatch(states);
+        }
+    }
+
+    /**
+     * 多个卡池中已导入的最大seq_id
+     *
+     * @param states 导入状态
+     * @return 最大seq_id，没有记录时返回null
+     */
+    public static Integer maxSeqId(Collection<PlayerImportState> states) {
+        Integer max = null;
+        for (PlayerImportState state : states) {
+            max = max(max, state.getMaxSeqId());
+        }
+        return max;
+    }
+
+    /**
+     * 计算本次导入后的状态
+     *
+     * @param roleId           玩家roleId
+     * @param poolType         卡池类型
+     * @param previous         导入前的状态，没有时为null
+     * @param headSeqId        本次导入第一页第一条记录的seq_id，未请求该卡池时为null
+     * @param seqIds           本次获取到的该卡池记录的seq_id
+     * @param previousMaxSeqId 导入前同类记录的最大seq_id
+     * @param beginnerPool     是否为新手池
+     * @return 导入后的状态
+     */
+    public static PlayerImportState advance(String roleId, String poolType, PlayerImportState previous,
+                                            Integer headSeqId, List<String> seqIds, Integer previousMaxSeqId,
+                                            boolean beginnerPool) {
+        Integer maxSeqId = previous != null ? previous.getMaxSeqId() : null;
+        int recordCount = previous != null && previous.getRecordCount() != null ? previous.getRecordCount() : 0;
+        for (String seqId : seqIds) {
+            int seq = Integer.parseInt(seqId);
+            maxSeqId = max(maxSeqId, seq);
+            if (previousMaxSeqId == null || seq > previousMaxSeqId) {
+                recordCount++;                                               // 比导入前最大seq_id新的记录才是新增记录
+            }
+        }
+        if (headSeqId == null && previous != null) {
+            headSeqId = previous.getHeadSeqId();
+        }
+        boolean beginnerComplete = beginnerPool && recordCount >= BEGINNER_POOL_SIZE;
+        return new PlayerImportState(roleId, poolType, maxSeqId, headSeqId, recordCount, beginnerComplete, new Date());
+    }
+
+    /**
+     * 根据已有记录初始化没有导入状态的旧玩家
+     * 旧数据只能按玩家查询最大seq_id，各卡池的max_seq_id均初始化为该值
+     *
+     * @param roleId       玩家roleId
+     * @param maxSeqId     已有记录的最大seq_id
+     * @param recordCounts 卡池类型 → 已有记录数
+     * @param beginnerPoolType 新手池类型，没有新手池时为null
+     * @return 卡池类型 → 导入状态
+     */
+    public static Map<String, PlayerImportState> initialStates(String roleId, Integer maxSeqId,
+                                                               Map<String, Integer> recordCounts,
+                                                               String beginnerPoolType) {
+        Map<String, PlayerImportState> states = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : recordCounts.entrySet()) {
+            String poolType = entry.getKey();
+            int recordCount = entry.getValue();
+            boolean beginnerComplete = poolType.equals(beginnerPoolType) && recordCount >= BEGINNER_POOL_SIZE;
+            states.put(poolType, new PlayerImportState(roleId, poolType, maxSeqId, null, recordCount,
+                    beginnerComplete, null));
+        }
+        return states;
+    }
+
+    /**
+     * 按卡池类型分组记录的seq_id
+     */
+    public static <T> Map<String, List<String>> groupSeqIds(List<T> records,
+                                                            Function<T, String> poolTypeOf,
+                                                            Function<T, String> seqIdOf) {
+        Map<String, List<String>> seqIds = new LinkedHashMap<>();
+        for (T record : records) {
+            seqIds.computeIfAbsent(poolTypeOf.apply(record), k -> new ArrayList<>()).add(seqIdOf.apply(record));
+        }
+        return seqIds;
+    }
+
+    private static Integer max(Integer a, Integer b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null ? a : Math.max(a, b);
+    }
+}
@@ -0,0 +1,143 @@
+package org.yituliu.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import okhttp3.FormBody;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.springframework.stereotype.Service;
+import org.yituliu.common.annotation.RedisCacheable;
+import org.yituliu.common.utils.JsonMapper;
+import org.yituliu.common.utils.OkHttpUtil;
+import org.yituliu.entity.dto.pool.record.EndfieldUserInfoDTO;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * 玩家token解析服务
+ * 通过本地token服务把hgToken换成玩家信息和u8Token，结果按hgToken的SHA-256缓存
+ * 创建任务时在后台预先解析（见PoolRecordTaskService.createTask），任务开始执行时通常已命中缓存，排队等待与token解析同时进行
+ * 本地服务一次只能解析一个hgToken，同时到达的多个任务并发解析，相同hgToken的并发调用由缓存切面合并为一次请求
+ * 缓存中的u8Token用hgToken派生的密钥加密，只持有Redis数据而没有hgToken时无法还原u8Token
+ */
+@Service
+public class PlayerTokenService {
+
+    private static final String TOKEN_SERVICE_API = "http://127.0.0.1:10086/token";
+
+    private static final OkHttpClient TOKEN_SERVICE_CLIENT = OkHttpUtil.newBuilder().build();
+
+    /**
+     * 解析结果的缓存时间，单位秒，不超过u8Token的有效期
+     */
+    private static final int U8_TOKEN_TIMEOUT = 30 * 60;
+
+    // 派生u8Token加密密钥时拼接在hgToken前，与缓存key使用的SHA-256(hgToken)不同
+    private static final String SEAL_KEY_PREFIX = "u8Token:";
+
+    private static final String SEAL_TRANSFORMATION = "AES/GCM/NoPadding";
+
+    private static final int SEAL_IV_LENGTH = 12;
+
+    private static final int SEAL_TAG_BITS = 128;
+
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
+    /**
+     * 请求本地token服务，获取玩家信息
+     * 缓存key只包含hgToken的SHA-256，hgToken本身不写入Redis的key；返回值中的u8Token已加密，使用前需调用open解密
+     * token服务拒绝hgToken（4xx）或没有返回data时返回null，空结果缓存nullTimeout秒，不计入熔断器
+     * token服务不可用（连接失败、5xx）时抛出UncheckedIOException，计入熔断器
+     *
+     * @param tokenHash hgToken的SHA-256，作为缓存key
+     * @param hgToken   hgToken
+     * @return 玩家信息，包括roleName，roleId，uid，加密的u8token；hgToken无效时返回null
+     */
+    @RedisCacheable(key = "PLAYER:TOKEN", paramOrMethod = "param", timeout = U8_TOKEN_TIMEOUT,
+            localCache = true, localTimeout = 600, nullTimeout = 30, failureThreshold = 5)
+    public EndfieldUserInfoDTO resolve(String tokenHash, String hgToken) {
+        //本地创建token的服务请求参数，使用表单格式发送
+        Request request = new Request.Builder()
+                .url(TOKEN_SERVICE_API)
+                .post(new FormBody.Builder().add("hgToken", hgToken).build())
+                .build();
+        String localServiceResponseText;
+        try (Response response = TOKEN_SERVICE_CLIENT.newCall(request).execute()) {
+            if (response.code() >= 400 && response.code() < 500) {
+                return null;
+            }
+            if (!response.isSuccessful()) {
+                throw new IOException("Unexpected code " + response.code());
+            }
+            ResponseBody responseBody = response.body();
+            localServiceResponseText = responseBody != null ? responseBody.string() : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("token服务请求失败", e);
+        }
+        JsonNode jsonNode = JsonMapper.parseJSONObject(localServiceResponseText);
+        JsonNode data = jsonNode != null ? jsonNode.get("data") : null;
+        if (data == null || !data.isObject()) {
+            return null;
+        }
+        //服务返回的信息，包括roleName，roleId，uid，u8token
+        EndfieldUserInfoDTO endfieldUserInfoDTO = JsonMapper.parseObject(data.toString(), EndfieldUserInfoDTO.class);
+        if (endfieldUserInfoDTO.getRoleId() == null || endfieldUserInfoDTO.getU8Token() == null) {
+            return null;
+        }
+        endfieldUserInfoDTO.setU8Token(seal(endfieldUserInfoDTO.getU8Token(), hgToken));
+        return endfieldUserInfoDTO;
+    }
+
+    /**
+     * 解密resolve返回的u8Token，返回新对象，不修改缓存中的对象
+     *
+     * @param sealed  resolve的返回值
+     * @param hgToken hgToken
+     * @return u8Token为明文的玩家信息
+     */
+    public static EndfieldUserInfoDTO open(EndfieldUserInfoDTO sealed, String hgToken) {
+        byte[] bytes = Base64.getDecoder().decode(sealed.getU8Token());
+        try {
+            Cipher cipher = Cipher.getInstance(SEAL_TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, sealKey(hgToken),
+                    new GCMParameterSpec(SEAL_TAG_BITS, bytes, 0, SEAL_IV_LENGTH));
+            byte[] plain = cipher.doFinal(bytes, SEAL_IV_LENGTH, bytes.length - SEAL_IV_LENGTH);
+            return new EndfieldUserInfoDTO(new String(plain, StandardCharsets.UTF_8), sealed.getNickName(),
+                    sealed.getUid(), sealed.getRoleId());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("u8Token解密失败", e);
+        }
+    }
+
+    /**
+     * 用hgToken派生的密钥加密u8Token，结果为Base64(IV + 密文)
+     */
+    private static String seal(String u8Token, String hgToken) {
+        byte[] iv = new byte[SEAL_IV_LENGTH];
+        SECURE_RANDOM.nextBytes(iv);
+        try {
+            Cipher cipher = Cipher.getInstance(SEAL_TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, sealKey(hgToken), new GCMParameterSpec(SEAL_TAG_BITS, iv));
+            byte[] encrypted = cipher.doFinal(u8Token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(
+                    ByteBuffer.allocate(iv.length + encrypted.length).put(iv).put(encrypted).array());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("u8Token加密失败", e);
+        }
+    }
+
+    private static SecretKeySpec sealKey(String hgToken) {
+        return new SecretKeySpec(DigestUtils.sha256(SEAL_KEY_PREFIX + hgToken), "AES");
+    }
+}
@@ -0,0 +1,317 @@
+package org.yituliu.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+import okhttp3.*;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.yituliu.common.utils.JsonMapper;
+import org.yituliu.common.utils.LogUtils;
+import org.yituliu.common.utils.PoolRecordTaskUtil;
+import org.yituliu.entity.dto.pool.record.CharacterPoolRecordResponseDTO;
+import org.yituliu.entity.dto.pool.record.PoolRecordPageDTO;
+import org.yituliu.entity.dto.pool.record.WeaponPoolRecordResponseDTO;
+import org.yituliu.entity.po.CharacterPoolRecord;
+import org.yituliu.entity.po.WeaponPoolRecord;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import static org.yituliu.common.utils.UrlEncodeUtil.smartUrlEncode;
+
+/**
+ * 终末地寻访记录接口客户端
+ * 请求通过OkHttp的enqueue异步发送，等待响应期间不占用线程，一次导入的所有分页请求可以同时排队
+ * 同时进行的请求数由Dispatcher限制（见OkHttpConfig），超出的请求在Dispatcher中排队
+ * 响应体从字节流直接解析，不生成中间String；导入时使用记录模式，列表中的记录直接解析为持久化对象
+ */
+@Service
+public class PoolRecordApiClient {
+
+    private static final HttpUrl CHARACTER_RECORD_API = HttpUrl.get("https://ef-webview.hypergryph.com/api/record/char");
+
+    private static final HttpUrl WEAPON_RECORD_API = HttpUrl.get("https://ef-webview.hypergryph.com/api/record/weapon");
+
+    private static final String LANG = "zh-cn";
+
+    private static final String SERVER_ID = "1";
+
+    /**
+     * 请求头，所有请求共用
+     * Accept-Encoding由OkHttpUtil的拦截器统一处理
+     */
+    private static final Headers HEADERS = Headers.of(PoolRecordTaskUtil.getHeader());
+
+    private static final ObjectReader CHARACTER_RESPONSE_READER = JsonMapper.readerFor(CharacterPoolRecordResponseDTO.class);
+
+    private static final ObjectReader WEAPON_RESPONSE_READER = JsonMapper.readerFor(WeaponPoolRecordResponseDTO.class);
+
+    private static final ObjectReader CHARACTER_RECORD_READER = JsonMapper.readerFor(CharacterPoolRecord.class);
+
+    private static final ObjectReader WEAPON_RECORD_READER = JsonMapper.readerFor(WeaponPoolRecord.class);
+
+    private static final String EMPTY_RESPONSE_MSG = "请求终末地角色抽卡记录失败";
+
+    private final OkHttpClient okHttpClient;
+
+    private final int prewarmConnections;
+
+    public PoolRecordApiClient(@Qualifier("recordApiOkHttpClient") OkHttpClient okHttpClient,
+                               @Value("${http-client.record-api.prewarm-connections:1}") int prewarmConnections) {
+        this.okHttpClient = okHttpClient;
+        this.prewarmConnections = prewarmConnections;
+    }
+
+    /**
+     * 应用启动完成后预先建立到上游的连接，第一批导入请求不需要等待TCP和TLS握手
+     * HTTP/2下所有请求共用一个连接，预热1个连接即可
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void prewarm() {
+        HttpUrl url = CHARACTER_RECORD_API.resolve("/");
+        for (int i = 0; i < prewarmConnections; i++) {
+            Request request = new Request.Builder().url(url).headers(HEADERS).head().build();
+            okHttpClient.newCall(request).enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    LogUtils.error("预热寻访记录接口连接失败", e);
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    response.close();                                         // 只需要建立连接，忽略响应
+                }
+            });
+        }
+    }
+
+    /**
+     * 创建一次导入任务使用的会话，token只编码一次，各分页请求在会话的URL模板上追加参数
+     *
+     * @param u8Token 玩家的u8Token
+     * @param roleId  玩家的roleId，记录模式下写入解析出的持久化对象
+     * @return 请求会话
+     */
+    public Session session(String u8Token, String roleId) {
+        String encodeToken = smartUrlEncode(u8Token);
+        HttpUrl characterUrl = CHARACTER_RECORD_API.newBuilder()
+                .addQueryParameter("lang", LANG)
+                .addEncodedQueryParameter("token", encodeToken)
+                .addQueryParameter("server_id", SERVER_ID)
+                .build();
+        HttpUrl weaponUrl = WEAPON_RECORD_API.newBuilder()
+                .addQueryParameter("lang", LANG)
+                .addEncodedQueryParameter("token", encodeToken)
+                .addQueryParameter("server_id", SERVER_ID)
+                .build();
+        return new Session(roleId, characterUrl, weaponUrl);
+    }
+
+    /**
+     * 一次导入任务的请求会话
+     */
+    public class Session {
+
+        private final String roleId;
+
+        private final HttpUrl characterUrl;
+
+        private final HttpUrl weaponUrl;
+
+        private Session(String roleId, HttpUrl characterUrl, HttpUrl weaponUrl) {
+            this.roleId = roleId;
+            this.characterUrl = characterUrl;
+            this.weaponUrl = weaponUrl;
+        }
+
+        /**
+         * 请求一页干员寻访记录
+         * 记录为空时返回code为500的结果，请求失败时future异常完成
+         *
+         * @param poolType 卡池类型
+         * @param seqId    从该seq_id之后开始查询，为null时查询第一页
+         * @return 寻访记录
+         */
+        public CompletableFuture<CharacterPoolRecordResponseDTO> character(String poolType, String seqId) {
+            return enqueue(characterUrl(poolType, seqId), in -> {
+                CharacterPoolRecordResponseDTO characterPoolRecordResponseDTO = CHARACTER_RESPONSE_READER.readValue(in);
+                if (characterPoolRecordResponseDTO == null || characterPoolRecordResponseDTO.getData() == null
+                        || characterPoolRecordResponseDTO.getData().getList() == null
+                        || characterPoolRecordResponseDTO.getData().getList().isEmpty()) {
+                    return new CharacterPoolRecordResponseDTO(500, null, EMPTY_RESPONSE_MSG, poolType);
+                }
+                characterPoolRecordResponseDTO.setPoolType(poolType);
+                return characterPoolRecordResponseDTO;
+            });
+        }
+
+        /**
+         * 请求一页武器寻访记录
+         * 记录为空时返回code为500的结果，请求失败时future异常完成
+         *
+         * @param seqId 从该seq_id之后开始查询，为null时查询第一页
+         * @return 寻访记录
+         */
+        public CompletableFuture<WeaponPoolRecordResponseDTO> weapon(String seqId) {
+            return enqueue(weaponUrl(seqId), in -> {
+                WeaponPoolRecordResponseDTO weaponPoolRecordResponseDTO = WEAPON_RESPONSE_READER.readValue(in);
+                if (weaponPoolRecordResponseDTO == null || weaponPoolRecordResponseDTO.getData() == null
+                        || weaponPoolRecordResponseDTO.getData().getList() == null
+                        || weaponPoolRecordResponseDTO.getData().getList().isEmpty()) {
+                    return new WeaponPoolRecordResponseDTO(500, null, EMPTY_RESPONSE_MSG);
+                }
+                return weaponPoolRecordResponseDTO;
+            });
+        }
+
+        /**
+         * 请求一页干员寻访记录，记录直接解析为持久化对象，不经过DTO
+         * 持久化对象的roleId、lang、poolType、serverId已填充，id由插入时生成
+         * 记录为空时返回code为500的结果，请求失败时future异常完成
+         *
+         * @param poolType 卡池类型
+         * @param seqId    从该seq_id之后开始查询，为null时查询第一页
+         * @return 寻访记录
+         */
+        public CompletableFuture<PoolRecordPageDTO<CharacterPoolRecord>> characterRecords(String poolType, String seqId) {
+            return enqueue(characterUrl(poolType, seqId), in ->
+                    readPage(in, CHARACTER_RECORD_READER, (CharacterPoolRecord record) -> {
+                        record.setRoleId(roleId);
+                        record.setLang(LANG);
+                        record.setPoolType(poolType);
+                        record.setServerId(SERVER_ID);
+                    }));
+        }
+
+        /**
+         * 请求一页武器寻访记录，记录直接解析为持久化对象，不经过DTO
+         * 持久化对象的roleId、lang、serverId已填充，id由插入时生成
+         * 记录为空时返回code为500的结果，请求失败时future异常完成
+         *
+         * @param seqId 从该seq_id之后开始查询，为null时查询第一页
+         * @return 寻访记录
+         */
+        public CompletableFuture<PoolRecordPageDTO<WeaponPoolRecord>> weaponRecords(String seqId) {
+            return enqueue(weaponUrl(seqId), in ->
+                    readPage(in, WEAPON_RECORD_READER, (WeaponPoolRecord record) -> {
+                        record.setRoleId(roleId);
+                        record.setLang(LANG);
+                        record.setServerId(SERVER_ID);
+                    }));
+        }
+
+        private HttpUrl characterUrl(String poolType, String seqId) {
+            HttpUrl.Builder urlBuilder = characterUrl.newBuilder().addQueryParameter("pool_type", poolType);
+            if (seqId != null) {
+                urlBuilder.addQueryParameter("seq_id", seqId);
+            }
+            return urlBuilder.build();
+        }
+
+        private HttpUrl weaponUrl(String seqId) {
+            return seqId == null ? weaponUrl : weaponUrl.newBuilder().addQueryParameter("seq_id", seqId).build();
+        }
+    }
+
+    /**
+     * 响应体解析器，从响应字节流读取结果
+     */
+    @FunctionalInterface
+    private interface ResponseParser<T> {
+        T parse(InputStream in) throws IOException;
+    }
+
+    /**
+     * 流式解析一页寻访记录，只读取code、msg、data.list和data.hasMore，其余字段跳过
+     * list中的每条记录由recordReader直接读取为持久化对象
+     */
+    private static <T> PoolRecordPageDTO<T> readPage(InputStream in, ObjectReader recordReader, Consumer<T> filler)
+            throws IOException {
+        PoolRecordPageDTO<T> page = new PoolRecordPageDTO<>();
+        List<T> list = new ArrayList<>();
+        try (JsonParser parser = recordReader.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("寻访记录响应不是JSON对象");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if ("code".equals(field)) {
+                    page.setCode(parser.getValueAsInt());
+                } else if ("msg".equals(field)) {
+                    page.setMsg(parser.getValueAsString());
+                } else if ("data".equals(field) && token == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String dataField = parser.getCurrentName();
+                        JsonToken dataToken = parser.nextToken();
+                        if ("list".equals(dataField) && dataToken == JsonToken.START_ARRAY) {
+                            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                                T record = recordReader.readValue(parser);
+                                filler.accept(record);
+                                list.add(record);
+                            }
+                        } else if ("hasMore".equals(dataField)) {
+                            page.setHasMore(parser.getValueAsBoolean());
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        if (list.isEmpty()) {
+            return new PoolRecordPageDTO<>(500, EMPTY_RESPONSE_MSG, list, false);
+        }
+        page.setList(list);
+        return page;
+    }
+
+    /**
+     * 异步发送GET请求，响应体在OkHttp的回调线程中边读取边解析
+     */
+    private <T> CompletableFuture<T> enqueue(HttpUrl url, ResponseParser<T> parser) {
+        Request request = new Request.Builder().url(url).headers(HEADERS).get().build();
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Call call = okHttpClient.newCall(request);
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                LogUtils.error("API请求失败: {}", url.encodedPath(), e);          // URL中包含token，只记录路径
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (response) {
+                    ResponseBody responseBody = response.body();
+                    if (!response.isSuccessful()) {
+                        throw new IOException("Unexpected code " + response.code() + " " + url.encodedPath());
+                    }
+                    if (responseBody == null) {
+                        throw new IOException("Empty body " + url.encodedPath());
+                    }
+                    future.complete(parser.parse(responseBody.byteStream()));
+                } catch (Exception e) {
+                    LogUtils.error("API响应处理失败: {}", url.encodedPath(), e);
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        future.whenComplete((result, e) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+        return future;
+    }
+}
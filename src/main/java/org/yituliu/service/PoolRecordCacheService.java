@@ -0,0 +1,110 @@
+package org.yituliu.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.yituliu.common.utils.Gzip;
+import org.yituliu.common.utils.LogUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 玩家寻访记录列表缓存
+ * 缓存的是序列化并gzip压缩后的完整响应，命中时直接写出字节，不需要查询数据库和Jackson序列化
+ * 缓存key包含玩家的版本号，导入完成后版本号加1，旧版本的缓存不再被读取，到期后自动删除；
+ * 导入前读取数据库的请求即使在导入后才写入缓存，写入的也是旧版本的key
+ */
+@Service
+public class PoolRecordCacheService {
+
+    private static final String VERSION_KEY_PREFIX = "pool_record:list_version.";
+
+    private static final String LIST_KEY_PREFIX = "pool_record:list.";
+
+    private static final long LIST_TTL_HOURS = 24;
+
+    /**
+     * 版本号的过期时间，长于列表缓存：版本号过期时旧版本的列表缓存已全部过期，版本号从0重新开始不会读到旧数据
+     */
+    private static final long VERSION_TTL_HOURS = 2 * LIST_TTL_HOURS;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisTemplate<String, byte[]> binaryRedisTemplate;
+    private final ObjectMapper objectMapper;
+
+    public PoolRecordCacheService(StringRedisTemplate stringRedisTemplate,
+                                  @Qualifier("binaryRedisTemplate") RedisTemplate<String, byte[]> binaryRedisTemplate,
+                                  ObjectMapper objectMapper) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.binaryRedisTemplate = binaryRedisTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 读取玩家寻访记录列表的gzip压缩JSON，未命中时加载并写入缓存
+     *
+     * Redis不可用时直接加载，不写入缓存
+     *
+     * @param roleId 玩家roleId
+     * @param loader 加载响应对象，使用Spring MVC相同的ObjectMapper序列化
+     * @return gzip压缩后的JSON
+     */
+    public byte[] getOrLoad(String roleId, Supplier<Object> loader) {
+        String listKey;
+        try {
+            String version = stringRedisTemplate.opsForValue().get(VERSION_KEY_PREFIX + roleId);
+            listKey = LIST_KEY_PREFIX + roleId + ".v" + (version != null ? version : "0");
+            byte[] cached = binaryRedisTemplate.opsForValue().get(listKey);
+            if (cached != null) {
+                return cached;
+            }
+        } catch (Exception e) {
+            LogUtils.error("roleId: {} 读取寻访记录缓存失败，直接查询数据库", roleId, e);
+            return load(loader);
+        }
+
+        byte[] compressed = load(loader);
+        try {
+            binaryRedisTemplate.opsForValue().set(listKey, compressed, LIST_TTL_HOURS, TimeUnit.HOURS);
+        } catch (Exception e) {
+            LogUtils.error("roleId: {} 写入寻访记录缓存失败", roleId, e);
+        }
+        return compressed;
+    }
+
+    private byte[] load(Supplier<Object> loader) {
+        try {
+            return Gzip.compress(objectMapper.writeValueAsBytes(loader.get()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 玩家的寻访记录变化后使缓存失效
+     * 版本号更新失败时删除当前版本的列表缓存，避免导入完成后仍返回旧列表
+     *
+     * @param roleId 玩家roleId
+     */
+    public void invalidate(String roleId) {
+        String versionKey = VERSION_KEY_PREFIX + roleId;
+        try {
+            stringRedisTemplate.opsForValue().increment(versionKey);
+            stringRedisTemplate.expire(versionKey, VERSION_TTL_HOURS, TimeUnit.HOURS);
+        } catch (Exception e) {
+            LogUtils.error("roleId: {} 寻访记录缓存版本号更新失败，删除当前版本的缓存", roleId, e);
+            try {
+                String version = stringRedisTemplate.opsForValue().get(versionKey);
+                binaryRedisTemplate.delete(LIST_KEY_PREFIX + roleId + ".v" + (version != null ? version : "0"));
+            } catch (Exception deleteException) {
+                LogUtils.error("roleId: {} 寻访记录缓存删除失败，旧缓存最长保留{}小时", roleId, LIST_TTL_HOURS,
+                        deleteException);
+            }
+        }
+    }
+}
@@ -1,29 +1,34 @@
 package org.yituliu.service;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.fasterxml.jackson.databind.JsonNode;
 import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.yituliu.common.annotation.RedisCacheable;
 import org.yituliu.common.enums.ResultCode;
 import org.yituliu.common.exception.ServiceException;
+import org.yituliu.common.exception.TooManyRequestsException;
+import org.yituliu.common.limiter.RateLimit;
+import org.yituliu.common.limiter.RateLimiter;
 import org.yituliu.common.utils.IdGenerator;
-import org.yituliu.common.utils.JsonMapper;
+import org.yituliu.common.utils.IpUtil;
 import org.yituliu.common.utils.LogUtils;
-import org.yituliu.common.utils.OkHttpUtil;
+import org.yituliu.common.utils.Result;
 import org.yituliu.entity.dto.pool.record.CharacterPoolRecordResponseDTO;
 import org.yituliu.entity.dto.pool.record.EndfieldUserInfoDTO;
 import org.yituliu.entity.po.CharacterPoolRecord;
 import org.yituliu.entity.po.EndministratorInfo;
 import org.yituliu.entity.po.PlayerPoolRecordTask;
 import org.yituliu.entity.po.WeaponPoolRecord;
+import org.yituliu.entity.vo.PoolRecordTaskVO;
 import org.yituliu.entity.vo.PoolRecordVO;
-import org.yituliu.mapper.CharacterPoolRecordMapper;
 import org.yituliu.mapper.EndministratorInfoMapper;
 import org.yituliu.mapper.PlayerPoolRecordTaskMapper;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.apache.commons.codec.digest.DigestUtils;
 
 import java.util.*;
 import java.util.concurrent.*;
@@ -49,59 +54,249 @@ public class PoolRecordTaskService {
 
     private final Long TEN_MINUTE = 60 * 10 * 1000L;
 
+    // 处理失败的任务的roleId
+    private static final String ERROR_ROLE_ID = "ERROR_TASK";
+
+    // hgToken哈希 → 未完成的任务ID
+    private static final String TOKEN_TASK_INDEX_PREFIX = "pool_record_task:token.";
+
+    // hgToken哈希 → 上次导入的roleId，用于预估任务开销
+    private static final String TOKEN_ROLE_PREFIX = "pool_record_task:token_role.";
+
+    private static final long TOKEN_ROLE_TTL_DAYS = 7;
+
+    // 首次导入的预估开销（上游请求页数），需要获取全部历史记录
+    private static final int FULL_IMPORT_COST = 120;
+
+    // 已有记录的玩家增量导入的预估开销，每个卡池通常只需1-2页
+    private static final int INCREMENTAL_IMPORT_COST = 6;
+
+    // 每等待1秒抵扣的开销，首次导入最多比增量导入多等待约FULL_IMPORT_COST秒
+    private static final int AGING_PER_SECOND = 1;
+
+    // 调度器取任务的间隔
+    private static final long DISPATCH_INTERVAL_MILLIS = 1000L;
+
+    // 任务平均耗时的平滑系数
+    private static final double TASK_DURATION_EWMA_ALPHA = 0.2;
+
+    // 任务平均耗时的初始值
+    private static final double INITIAL_TASK_MILLIS = 10_000;
+
+    // 任务平均耗时，单位毫秒
+    private volatile double averageTaskMillis = INITIAL_TASK_MILLIS;
+
+    // roleId导入锁，值为持有锁的任务ID
+    private static final String ROLE_IMPORT_LOCK_PREFIX = "pool_record_task:role_lock.";
+
+    private static final long ROLE_IMPORT_LOCK_TTL = 10 * 60 * 1000L;
+
+    // 获取导入锁失败而重新排队的任务，至少等待该时间后才会再次被调度
+    private static final long ROLE_LOCK_RETRY_MILLIS = 5000L;
+
+    // 只有锁的值仍是自己的任务ID时才删除，避免删除锁过期后其他任务获取的锁
+    private static final DefaultRedisScript<Long> RELEASE_LOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) else return 0 end",
+            Long.class);
+
+    // 本实例正在导入的roleId
+    private final Map<String, CompletableFuture<Void>> roleImports = new ConcurrentHashMap<>();
+
     private final IdGenerator idGenerator;
 
     private final PlayerPoolRecordTaskMapper playerPoolRecordTaskMapper;
     private final EndministratorInfoMapper endministratorInfoMapper;
+    private final PlayerImportStateService playerImportStateService;
     private final CharacterPoolRecordService characterPoolRecordService;
     private final WeaponPoolRecordService weaponPoolRecordService;
     private final RedisTemplate<String, Object> redisTemplate;
+    private final RateLimiter rateLimiter;
+    private final PoolRecordCacheService poolRecordCacheService;
+    private final PlayerTokenService playerTokenService;
+    private final Executor asyncExecutor;
 
     public PoolRecordTaskService(PlayerPoolRecordTaskMapper playerPoolRecordTaskMapper,
                                  EndministratorInfoMapper endministratorInfoMapper,
+                                 PlayerImportStateService playerImportStateService,
                                  CharacterPoolRecordService characterPoolRecordService,
                                  WeaponPoolRecordService weaponPoolRecordService,
-                                 RedisTemplate<String, Object> redisTemplate) {
+                                 RedisTemplate<String, Object> redisTemplate,
+                                 RateLimiter rateLimiter,
+                                 PoolRecordCacheService poolRecordCacheService,
+                                 PlayerTokenService playerTokenService,
+                                 @Qualifier("asyncExecutor") Executor asyncExecutor) {
 
         this.playerPoolRecordTaskMapper = playerPoolRecordTaskMapper;
         this.endministratorInfoMapper = endministratorInfoMapper;
+        this.playerImportStateService = playerImportStateService;
         this.characterPoolRecordService = characterPoolRecordService;
         this.weaponPoolRecordService = weaponPoolRecordService;
         this.redisTemplate = redisTemplate;
+        this.rateLimiter = rateLimiter;
+        this.poolRecordCacheService = poolRecordCacheService;
+        this.playerTokenService = playerTokenService;
+        this.asyncExecutor = asyncExecutor;
         this.idGenerator = new IdGenerator(1L);
 
 
     }
 
     /**
-     * 创建任务，以hgToken为key进行限流
-     * 限制：每个hgToken每分钟最多创建10个任务
+     * 创建任务，按hgToken、IP和全局限流
+     * 同一hgToken已有未完成的任务时直接返回该任务，不重复创建，也不计入限流
+     * hgToken → 任务ID索引用SET NX占用后才插入任务，同时提交的多个请求只有一个创建任务，其余返回该任务
+     * 排队任务预计等待时间超过任务有效期（10分钟）时拒绝创建，返回429和Retry-After
+     * 限制：每个hgToken每分钟最多创建1个任务，每个IP每分钟最多创建10个任务，全部请求每秒最多创建50个任务
+     * hgToken的限流key使用其SHA-256，hgToken本身不写入Redis的key
      */
-    public String createTask(HttpServletRequest httpServletRequest, String hgToken) {
-        // 限流逻辑：每个hgToken每分钟最多创建10个任务
-        String limitKey = "rate_limit:create_task." + hgToken;
-        long currentCount = redisTemplate.opsForValue().increment(limitKey);
+    public PoolRecordTaskVO createTask(HttpServletRequest httpServletRequest, String hgToken) {
+        String tokenHash = DigestUtils.sha256Hex(hgToken);
+        String tokenIndexKey = TOKEN_TASK_INDEX_PREFIX + tokenHash;
+        String pendingTaskId = findPendingTaskId(tokenIndexKey);
+        if (pendingTaskId != null) {
+            return pendingTask(pendingTaskId);
+        }
+
+        int pendingTasks = countPendingTasks();
+        long projectedWait = (pendingTasks + 1) * taskServiceMillis();
+        if (projectedWait > TEN_MINUTE) {
+            long retryAfterSeconds = (projectedWait - TEN_MINUTE + 999) / 1000;
+            throw new TooManyRequestsException(ResultCode.TOO_MANY_REQUESTS_PLEASE_TRY_AGAIN, retryAfterSeconds);
+        }
 
         String taskId = "task" + idGenerator.nextId();
+        // 任务超过10分钟未开始会被丢弃，索引同时过期；任务开始时索引的过期时间会延长
+        if (!Boolean.TRUE.equals(redisTemplate.opsForValue()
+                .setIfAbsent(tokenIndexKey, taskId, TEN_MINUTE, TimeUnit.MILLISECONDS))) {
+            // 同时提交的另一个请求已占用索引，返回它创建的任务
+            Object existingTaskId = redisTemplate.opsForValue().get(tokenIndexKey);
+            if (existingTaskId == null) {
+                throw new TooManyRequestsException(ResultCode.TOO_MANY_REQUESTS_PLEASE_TRY_AGAIN, 1);
+            }
+            return queuedTask(existingTaskId.toString());
+        }
 
-        // 如果是第一次请求，设置过期时间为1分钟
-        if (currentCount == 1) {
-            redisTemplate.expire(limitKey, 60, TimeUnit.SECONDS);
+        PlayerPoolRecordTask playerPoolRecordTask = new PlayerPoolRecordTask();
+        try {
+            rateLimiter.acquire(
+                    new RateLimit("rate_limit:create_task." + tokenHash, 1, 60),
+                    new RateLimit("rate_limit:create_task:ip." + IpUtil.getIpAddress(httpServletRequest), 10, 60),
+                    new RateLimit("rate_limit:create_task:global", 50, 1));
+
+            playerPoolRecordTask.setToken(hgToken);
+            playerPoolRecordTask.setStartFlag(false);
+            playerPoolRecordTask.setCompleteFlag(false);
+            playerPoolRecordTask.setCreateTime(new Date());
+            playerPoolRecordTask.setEstimatedCost(estimateCost(tokenHash));
+
+            playerPoolRecordTask.setTaskId(taskId);
+            playerPoolRecordTaskMapper.insert(playerPoolRecordTask);
+        } catch (RuntimeException e) {
+            // 限流或插入失败时释放索引，只删除自己占用的值
+            redisTemplate.execute(RELEASE_LOCK_SCRIPT, List.of(tokenIndexKey), taskId);
+            throw e;
         }
-        
-        if (currentCount > 1) {
-            throw new ServiceException(ResultCode.TOO_MANY_REQUESTS);
+        prefetchPlayerInfo(tokenHash, hgToken);
+        return queuedTask(taskId);
+    }
+
+    /**
+     * 在后台预先解析hgToken，任务在队列中等待时完成解析，结果由PlayerTokenService缓存
+     * 失败时只记录日志，任务执行时会重新解析
+     */
+    private void prefetchPlayerInfo(String tokenHash, String hgToken) {
+        CompletableFuture.runAsync(() -> playerTokenService.resolve(tokenHash, hgToken), asyncExecutor)
+                .exceptionally(e -> {
+                    LogUtils.error("预先解析hgToken失败，tokenHash: {}", tokenHash, e);
+                    return null;
+                });
+    }
+
+    /**
+     * 排队中的任务数，不包含已过期的任务
+     */
+    private int countPendingTasks() {
+        return playerPoolRecordTaskMapper.countPendingTasks(new Date(System.currentTimeMillis() - TEN_MINUTE));
+    }
+
+    /**
+     * 每个任务占用调度器的时间：调度器每秒取一个任务，并在调度线程中执行完才取下一个
+     * 平均耗时是本实例执行过的任务的统计，而排队任务数是所有实例共享的全局数量，多实例时预计等待时间偏保守
+     */
+    private long taskServiceMillis() {
+        return Math.max(DISPATCH_INTERVAL_MILLIS, (long) averageTaskMillis);
+    }
+
+    /**
+     * 排队中任务的位置和预计开始时间
+     * 位置按调度器的排序计算；之后创建的开销更小的任务可能排到前面，预计开始时间只是估计
+     */
+    private PoolRecordTaskVO queuedTask(String taskId) {
+        int queuePosition = playerPoolRecordTaskMapper.countTasksAhead(taskId, AGING_PER_SECOND, FULL_IMPORT_COST,
+                new Date(System.currentTimeMillis() - TEN_MINUTE)) + 1;
+        Date estimatedStartTime = new Date(System.currentTimeMillis() + (queuePosition - 1) * taskServiceMillis());
+        return new PoolRecordTaskVO(taskId, queuePosition, estimatedStartTime);
+    }
+
+    /**
+     * 任务结束后（无论成功或失败）更新任务平均耗时（指数加权移动平均）
+     */
+    private synchronized void recordTaskDuration(long durationMillis) {
+        averageTaskMillis += TASK_DURATION_EWMA_ALPHA * (durationMillis - averageTaskMillis);
+    }
+
+    /**
+     * 预估任务开销：该hgToken上次导入的玩家已有导入状态时只需增量导入，否则按首次导入计算
+     * 导入状态按主键查询，不扫描寻访记录表
+     *
+     * @param tokenHash hgToken的SHA-256
+     * @return 预估的上游请求页数
+     */
+    private int estimateCost(String tokenHash) {
+        Object roleId = redisTemplate.opsForValue().get(TOKEN_ROLE_PREFIX + tokenHash);
+        if (roleId == null || playerImportStateService.getStates(roleId.toString()).isEmpty()) {
+            return FULL_IMPORT_COST;
         }
+        return INCREMENTAL_IMPORT_COST;
+    }
 
-        PlayerPoolRecordTask playerPoolRecordTask = new PlayerPoolRecordTask();
-        playerPoolRecordTask.setToken(hgToken);
-        playerPoolRecordTask.setStartFlag(false);
-        playerPoolRecordTask.setCompleteFlag(false);
-        playerPoolRecordTask.setCreateTime(new Date());
+    /**
+     * 查找同一hgToken未完成的任务
+     * 已开始未完成的任务无论创建多久都视为未完成；未开始的任务超过10分钟视为过期
+     * 索引指向已完成、失败或过期的任务时删除索引；索引存在但任务还未插入（并发创建中）时视为未完成
+     *
+     * @param tokenIndexKey hgToken → 任务ID索引的key
+     * @return 任务ID，没有时返回null
+     */
+    private String findPendingTaskId(String tokenIndexKey) {
+        Object taskId = redisTemplate.opsForValue().get(tokenIndexKey);
+        if (taskId == null) {
+            return null;
+        }
+        PlayerPoolRecordTask playerPoolRecordTask = playerPoolRecordTaskMapper.selectById(taskId.toString());
+        if (playerPoolRecordTask == null) {
+            return taskId.toString();
+        }
+        boolean pending = !Boolean.TRUE.equals(playerPoolRecordTask.getCompleteFlag())
+                && !ERROR_ROLE_ID.equals(playerPoolRecordTask.getRoleId())
+                && (Boolean.TRUE.equals(playerPoolRecordTask.getStartFlag())
+                    || new Date().getTime() - playerPoolRecordTask.getCreateTime().getTime() < TEN_MINUTE);
+        if (!pending) {
+            redisTemplate.execute(RELEASE_LOCK_SCRIPT, List.of(tokenIndexKey), taskId.toString());
+            return null;
+        }
+        return taskId.toString();
+    }
 
-        playerPoolRecordTask.setTaskId(taskId);
-        playerPoolRecordTaskMapper.insert(playerPoolRecordTask);
-        return taskId;
+    /**
+     * 未完成任务的状态：已开始时位置为0，预计开始时间为实际开始时间
+     */
+    private PoolRecordTaskVO pendingTask(String taskId) {
+        PlayerPoolRecordTask playerPoolRecordTask = playerPoolRecordTaskMapper.selectById(taskId);
+        if (playerPoolRecordTask != null && Boolean.TRUE.equals(playerPoolRecordTask.getStartFlag())) {
+            return new PoolRecordTaskVO(taskId, 0, playerPoolRecordTask.getUpdateTime());
+        }
+        return queuedTask(taskId);
     }
 
     public EndministratorInfo checkTask(String taskId) {
@@ -117,20 +312,101 @@ public class PoolRecordTaskService {
     }
 
 
+    /**
+     * 导入玩家的寻访记录
+     * 同一个roleId同时只有一个任务导入：同一实例上的后续任务等待正在执行的导入完成后直接完成，
+     * 其他实例持有Redis锁时任务重新排队，稍后再导入（已有记录按seq_id跳过，只需获取新增部分）
+     * 干员和武器记录都在持有锁期间同步导入完成后才标记任务完成并释放锁
+     */
     @Async("asyncExecutor")
     public void savePoolRecordAsync(PlayerPoolRecordTask playerPoolRecordTask) {
         // 记录任务开始时间，用于计算处理耗时
         long startTime = System.currentTimeMillis();
+        try {
+            importPoolRecord(playerPoolRecordTask, startTime);
+        } finally {
+            // 失败和超时的任务同样占用调度器，过载时它们通常最慢，也计入平均耗时
+            recordTaskDuration(System.currentTimeMillis() - startTime);
+        }
+    }
+
+    private void importPoolRecord(PlayerPoolRecordTask playerPoolRecordTask, long startTime) {
+        String tokenHash = DigestUtils.sha256Hex(playerPoolRecordTask.getToken());
+
+        // 创建任务时已在后台解析，通常命中缓存；解析仍在进行时等待同一次请求
+        EndfieldUserInfoDTO sealedUserInfo = playerTokenService.resolve(tokenHash, playerPoolRecordTask.getToken());
+        if (sealedUserInfo == null) {
+            // hgToken无效，调度器把任务标记为失败
+            throw new ServiceException(ResultCode.TOKEN_EXPIRATION);
+        }
+        EndfieldUserInfoDTO endfieldUserInfoDTO = PlayerTokenService.open(sealedUserInfo, playerPoolRecordTask.getToken());
+        String roleId = endfieldUserInfoDTO.getRoleId();
+
+        CompletableFuture<Void> existing = roleImports.get(roleId);
+        if (existing != null) {
+            LogUtils.info("roleId: {} 正在导入，任务 {} 等待其完成", roleId, playerPoolRecordTask.getTaskId());
+            existing.whenComplete((result, e) -> {
+                if (e == null) {
+                    completeTask(playerPoolRecordTask, endfieldUserInfoDTO, tokenHash);
+                } else {
+                    playerPoolRecordTask.setRoleId(ERROR_ROLE_ID);
+                    playerPoolRecordTaskMapper.updateById(playerPoolRecordTask);
+                }
+            });
+            return;
+        }
+
+        String lockKey = ROLE_IMPORT_LOCK_PREFIX + roleId;
+        if (!tryAcquireRoleLock(lockKey, playerPoolRecordTask.getTaskId())) {
+            // 其他实例正在导入该roleId，任务重新排队，ROLE_LOCK_RETRY_MILLIS后再被调度，不阻塞调度线程
+            LogUtils.info("roleId: {} 正在其他实例导入，任务 {} 重新排队", roleId, playerPoolRecordTask.getTaskId());
+            playerPoolRecordTask.setStartFlag(false);
+            playerPoolRecordTask.setUpdateTime(new Date());
+            playerPoolRecordTaskMapper.updateById(playerPoolRecordTask);
+            return;
+        }
 
-        EndfieldUserInfoDTO endfieldUserInfoDTO = getPlayerInfo(playerPoolRecordTask);
+        CompletableFuture<Void> importing = new CompletableFuture<>();
+        roleImports.put(roleId, importing);
+        try {
+            try {
+                LogUtils.info("roleId: {} 开始干员寻访记录导入任务 耗时: {} ms", roleId, System.currentTimeMillis() - startTime);
+                characterPoolRecordService.saveCharacterPoolRecordAsync(endfieldUserInfoDTO);
+                LogUtils.info("roleId: {} 开始武器寻访记录导入任务 耗时: {} ms", roleId, System.currentTimeMillis() - startTime);
+                weaponPoolRecordService.saveWeaponPoolRecordAsync(endfieldUserInfoDTO);
+                completeTask(playerPoolRecordTask, endfieldUserInfoDTO, tokenHash);
+            } finally {
+                redisTemplate.execute(RELEASE_LOCK_SCRIPT, List.of(lockKey), playerPoolRecordTask.getTaskId());
+            }
+            importing.complete(null);
+        } catch (RuntimeException e) {
+            importing.completeExceptionally(e);
+            throw e;
+        } finally {
+            roleImports.remove(roleId, importing);
+        }
+        LogUtils.info("roleId: {} 全部寻访记录导入任务完成 耗时: {} ms", roleId, System.currentTimeMillis() - startTime);
+
+    }
 
+    /**
+     * 尝试获取roleId的导入锁，只尝试一次，锁最长持有ROLE_IMPORT_LOCK_TTL
+     *
+     * @return 是否获取成功
+     */
+    private boolean tryAcquireRoleLock(String lockKey, String taskId) {
+        return Boolean.TRUE.equals(redisTemplate.opsForValue()
+                .setIfAbsent(lockKey, taskId, ROLE_IMPORT_LOCK_TTL, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * 标记任务完成，保存玩家信息，删除hgToken → 任务ID索引，记录hgToken → roleId
+     */
+    private void completeTask(PlayerPoolRecordTask playerPoolRecordTask, EndfieldUserInfoDTO endfieldUserInfoDTO,
+                              String tokenHash) {
         String nickName = endfieldUserInfoDTO.getNickName();
         String roleId = endfieldUserInfoDTO.getRoleId();
         String uid = endfieldUserInfoDTO.getUid();
-        LogUtils.info("roleId: {} 开始干员寻访记录导入任务 耗时: {} ms", roleId, System.currentTimeMillis() - startTime);
-        characterPoolRecordService.saveCharacterPoolRecordAsync(endfieldUserInfoDTO);
-        LogUtils.info("roleId: {} 开始武器寻访记录导入任务 耗时: {} ms", roleId, System.currentTimeMillis() - startTime);
-        weaponPoolRecordService.saveWeaponPoolRecordAsync(endfieldUserInfoDTO);
 
         playerPoolRecordTask.setCompleteFlag(true);
         playerPoolRecordTask.setRoleId(roleId);
@@ -141,45 +417,50 @@ public class PoolRecordTaskService {
         if (!endministratorInfoMapper.exists(queryWrapper)) {
             EndministratorInfo endministratorInfo = new EndministratorInfo();
             endministratorInfo.setUid(uid);
-            endministratorInfo.setUid(uid);
             endministratorInfo.setRoleId(roleId);
             endministratorInfo.setNickName(nickName);
             endministratorInfoMapper.insert(endministratorInfo);
         }
 
         playerPoolRecordTaskMapper.updateById(playerPoolRecordTask);
-        LogUtils.info("roleId: {} 全部寻访记录导入任务完成 耗时: {} ms", roleId, System.currentTimeMillis() - startTime);
-
+        poolRecordCacheService.invalidate(roleId);
+        redisTemplate.delete(TOKEN_TASK_INDEX_PREFIX + tokenHash);
+        redisTemplate.opsForValue().set(TOKEN_ROLE_PREFIX + tokenHash, roleId, TOKEN_ROLE_TTL_DAYS, TimeUnit.DAYS);
     }
 
 
     /**
      * 获取用户角色卡池记录（同步版本）
+     * 返回gzip压缩后的完整响应JSON，优先读取缓存
      */
 
-    public PoolRecordVO getCharacterPoolRecordData(HttpServletRequest httpServletRequest, String taskId) {
+    public byte[] getCharacterPoolRecordData(HttpServletRequest httpServletRequest, String taskId) {
         PlayerPoolRecordTask playerPoolRecordTask = playerPoolRecordTaskMapper.selectById(taskId);
         if (playerPoolRecordTask == null) {
             throw new ServiceException(ResultCode.TOKEN_EXPIRATION);
         }
 
-        List<CharacterPoolRecord> characterPoolRecordByTaskId = characterPoolRecordService.getCharacterPoolRecordByTaskId(playerPoolRecordTask.getRoleId());
-        List<WeaponPoolRecord> weaponPoolRecordByTaskId = weaponPoolRecordService.getWeaponPoolRecordByTaskId(playerPoolRecordTask.getRoleId());
-
-        return new PoolRecordVO(characterPoolRecordByTaskId, weaponPoolRecordByTaskId);
+        String roleId = playerPoolRecordTask.getRoleId();
+        return poolRecordCacheService.getOrLoad(roleId, () -> {
+            List<CharacterPoolRecord> characterPoolRecordByTaskId = characterPoolRecordService.getCharacterPoolRecordByTaskId(roleId);
+            List<WeaponPoolRecord> weaponPoolRecordByTaskId = weaponPoolRecordService.getWeaponPoolRecordByTaskId(roleId);
+            return Result.success(new PoolRecordVO(characterPoolRecordByTaskId, weaponPoolRecordByTaskId));
+        });
 
     }
 
 
     /**
      * 定时处理待执行的角色池记录任务
-     * 每秒钟执行一次，优先处理最早创建的未开始任务
+     * 每秒钟执行一次，优先处理预估开销小的未开始任务，等待时间越长优先级越高
      */
     @Scheduled(cron = "* * * * * ?")
     protected void loadingPoolRecord() {
         PlayerPoolRecordTask playerPoolRecordTask = null;
         try {
-            playerPoolRecordTask = playerPoolRecordTaskMapper.selectFirstByStartFlagFalseOrderByCreateTimeAsc();
+            long now = System.currentTimeMillis();
+            playerPoolRecordTask = playerPoolRecordTaskMapper.selectNextPendingTask(AGING_PER_SECOND, FULL_IMPORT_COST,
+                    new Date(now - TEN_MINUTE), new Date(now - ROLE_LOCK_RETRY_MILLIS));
             if (playerPoolRecordTask == null) {
                 //            LogUtils.error("当前无任务");
                 return;
@@ -187,15 +468,16 @@ public class PoolRecordTaskService {
             playerPoolRecordTask.setStartFlag(true);
             playerPoolRecordTask.setUpdateTime(new Date());
             playerPoolRecordTaskMapper.updateById(playerPoolRecordTask);
-            if (new Date().getTime() - playerPoolRecordTask.getCreateTime().getTime() < TEN_MINUTE) {
-                savePoolRecordAsync(playerPoolRecordTask);
-            }
+            // 任务开始后最长执行ROLE_IMPORT_LOCK_TTL，期间同一hgToken重复提交仍返回该任务
+            redisTemplate.expire(TOKEN_TASK_INDEX_PREFIX + DigestUtils.sha256Hex(playerPoolRecordTask.getToken()),
+                    ROLE_IMPORT_LOCK_TTL, TimeUnit.MILLISECONDS);
+            savePoolRecordAsync(playerPoolRecordTask);
             LogUtils.info("当前执行：{}", playerPoolRecordTask.getTaskId());
         } catch (Exception e) {
             String taskId = "unknown";
             if (playerPoolRecordTask != null) {
                 taskId = playerPoolRecordTask.getTaskId();
-                playerPoolRecordTask.setRoleId("ERROR_TASK");
+                playerPoolRecordTask.setRoleId(ERROR_ROLE_ID);
                 playerPoolRecordTaskMapper.updateById(playerPoolRecordTask);
             }
             LogUtils.error("处理任务失败，任务ID: {}", taskId, e);
@@ -203,17 +485,21 @@ public class PoolRecordTaskService {
     }
 
 
-    @RedisCacheable(key = "TASK:ID", paramOrMethod = "getTaskId")
-    public EndfieldUserInfoDTO getPlayerInfo(PlayerPoolRecordTask playerPoolRecordTask) {
-        //本地创建token的服务请求参数
-        HashMap<String, String> tokenServiceParams = new HashMap<>();
-        tokenServiceParams.put("hgToken", playerPoolRecordTask.getToken());
-        // 使用表单格式向本地创建token的服务发送请求
-        String localServiceResponseText = OkHttpUtil.postForm("http://127.0.0.1:10086/token", tokenServiceParams);
-        LogUtils.info("本地服务响应：{}", localServiceResponseText);
-        JsonNode jsonNode = JsonMapper.parseJSONObject(localServiceResponseText);
-        //服务返回的信息，包括roleName，roleId，uid，u8token
-        return JsonMapper.parseObject(jsonNode.get("data").toString(), EndfieldUserInfoDTO.class);
+    /**
+     * 每分钟把过期未开始的任务批量标记为失败，调度器只扫描未过期的任务
+     * 用户重新提交时会创建新任务
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public void expireStaleTasks() {
+        try {
+            int expired = playerPoolRecordTaskMapper.expireStaleTasks(new Date(System.currentTimeMillis() - TEN_MINUTE),
+                    ERROR_ROLE_ID);
+            if (expired > 0) {
+                LogUtils.info("过期任务数：{}", expired);
+            }
+        } catch (Exception e) {
+            LogUtils.error("标记过期任务失败", e);
+        }
     }
 
 
@@ -0,0 +1,164 @@
+package org.yituliu.service;
+
+import org.springframework.stereotype.Service;
+import org.yituliu.common.utils.HyperLogLog;
+import org.yituliu.common.utils.TimeBucketUtil;
+import org.yituliu.entity.vo.RealtimeWindowVO;
+import org.yituliu.entity.vo.UrlPeriodDataVO;
+import org.yituliu.entity.vo.UrlTotalVisitVO;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * 实时流量滑动窗口计数服务
+ * 写入访问日志时在内存中按分钟和小时两级环形时间桶累计PV、URL PV和UV(HyperLogLog)
+ * 查询最近N分钟/N小时只合并内存中的时间桶，不访问数据库
+ * 计数使用LongAdder分段累加，高并发写入时线程之间几乎没有竞争
+ */
+@Service
+public class RealtimeTrafficService {
+
+    /**
+     * 分钟时间桶数量，最多查询最近60分钟
+     */
+    public static final int MINUTE_SLOTS = 60;
+
+    /**
+     * 小时时间桶数量，最多查询最近24小时
+     */
+    public static final int HOUR_SLOTS = 24;
+
+    /**
+     * 返回的访问量最高的URL数量
+     */
+    private static final int TOP_URL_COUNT = 10;
+
+    private final SlidingWindow minuteWindow =
+            new SlidingWindow(MINUTE_SLOTS, TimeBucketUtil::toEpochMinute, TimeBucketUtil::formatMinute);
+
+    private final SlidingWindow hourWindow =
+            new SlidingWindow(HOUR_SLOTS, TimeBucketUtil::toEpochHour, TimeBucketUtil::formatHour);
+
+    /**
+     * 记录一次访问
+     *
+     * @param url        标准化后的URL
+     * @param ip         客户端IP
+     * @param timeMillis 访问时间戳
+     */
+    public void record(String url, String ip, long timeMillis) {
+        long ipHash = HyperLogLog.hash(ip != null ? ip : "Unknown");          // 两级时间桶共用一次哈希
+        minuteWindow.record(url, ipHash, timeMillis);
+        hourWindow.record(url, ipHash, timeMillis);
+    }
+
+    /**
+     * 最近N分钟的实时流量，包含当前分钟
+     *
+     * @param minutes 分钟数，1-60
+     * @return 窗口统计
+     */
+    public RealtimeWindowVO lastMinutes(int minutes) {
+        return minuteWindow.snapshot(minutes, System.currentTimeMillis());
+    }
+
+    /**
+     * 最近N小时的实时流量，包含当前小时
+     *
+     * @param hours 小时数，1-24
+     * @return 窗口统计
+     */
+    public RealtimeWindowVO lastHours(int hours) {
+        return hourWindow.snapshot(hours, System.currentTimeMillis());
+    }
+
+    /**
+     * 固定数量时间桶组成的环形滑动窗口
+     * 时间桶按epoch序号取模定位，序号不一致说明是一圈之前的旧数据，用新桶CAS替换
+     */
+    private static final class SlidingWindow {
+
+        private final AtomicReferenceArray<Bucket> slots;
+        private final LongUnaryOperator toEpoch;
+        private final LongFunction<String> formatter;
+
+        private SlidingWindow(int slotCount, LongUnaryOperator toEpoch, LongFunction<String> formatter) {
+            this.slots = new AtomicReferenceArray<>(slotCount);
+            this.toEpoch = toEpoch;
+            this.formatter = formatter;
+        }
+
+        private void record(String url, long ipHash, long timeMillis) {
+            long epoch = toEpoch.applyAsLong(timeMillis);
+            int index = (int) Math.floorMod(epoch, (long) slots.length());
+            Bucket bucket;
+            while (true) {
+                bucket = slots.get(index);
+                if (bucket != null && bucket.epoch == epoch) {
+                    break;
+                }
+                if (bucket != null && bucket.epoch > epoch) {
+                    return;                                                  // 早于窗口范围的访问直接忽略
+                }
+                Bucket fresh = new Bucket(epoch);
+                if (slots.compareAndSet(index, bucket, fresh)) {             // 替换一圈之前的旧时间桶
+                    bucket = fresh;
+                    break;
+                }
+            }
+            bucket.pv.increment();
+            bucket.urlPv.computeIfAbsent(url, k -> new LongAdder()).increment();
+            bucket.uv.offerHash(ipHash);
+        }
+
+        private RealtimeWindowVO snapshot(int count, long nowMillis) {
+            long current = toEpoch.applyAsLong(nowMillis);
+            long pageViews = 0;
+            HyperLogLog uv = new HyperLogLog();
+            Map<String, Long> urlPv = new HashMap<>();
+            List<UrlPeriodDataVO> series = new ArrayList<>(count);
+
+            for (long epoch = current - count + 1; epoch <= current; epoch++) {
+                Bucket bucket = slots.get((int) Math.floorMod(epoch, (long) slots.length()));
+                long bucketPv = 0;
+                if (bucket != null && bucket.epoch == epoch) {
+                    bucketPv = bucket.pv.sum();
+                    uv.merge(bucket.uv);
+                    bucket.urlPv.forEach((url, adder) -> urlPv.merge(url, adder.sum(), Long::sum));
+                }
+                pageViews += bucketPv;
+                series.add(new UrlPeriodDataVO(formatter.apply(epoch), bucketPv)); // 无访问的时间桶填0
+            }
+
+            List<Map.Entry<String, Long>> sorted = new ArrayList<>(urlPv.entrySet());
+            sorted.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+            List<UrlTotalVisitVO> topUrls = new ArrayList<>(TOP_URL_COUNT);
+            for (int i = 0; i < sorted.size() && i < TOP_URL_COUNT; i++) {
+                topUrls.add(new UrlTotalVisitVO(sorted.get(i).getKey(), sorted.get(i).getValue()));
+            }
+            return new RealtimeWindowVO(pageViews, uv.cardinality(), topUrls, series);
+        }
+    }
+
+    /**
+     * 单个时间桶
+     */
+    private static final class Bucket {
+        private final long epoch;
+        private final LongAdder pv = new LongAdder();
+        private final Map<String, LongAdder> urlPv = new ConcurrentHashMap<>();
+        private final HyperLogLog uv = new HyperLogLog();
+
+        private Bucket(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+}
@@ -3,20 +3,45 @@ package org.yituliu.service;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.yituliu.entity.po.TrafficStats;
-
-import java.util.Calendar;
-import java.util.Date;
 
 @Service
 public class TaskService {
 
     @Autowired
-    private AdminService adminService;
+    private TrafficStatsBackfillService trafficStatsBackfillService;
+
+    @Autowired
+    private AccessLogPartitionService accessLogPartitionService;
+
+    @Autowired
+    private AccessRollupService accessRollupService;
+
+    @Autowired
+    private TopUrlSketchService topUrlSketchService;
+
+    /**
+     * URL小时访问量写入任务
+     * 每分钟将内存中累加的URL小时访问量批量upsert到access_url_hourly表，并合并到高访问量URL草图
+     */
+    @Scheduled(fixedDelay = 60 * 1000)
+    public void flushAccessRollupTask() {
+        try {
+            accessRollupService.flush();
+        } catch (Exception e) {
+            System.err.println("URL小时访问量写入任务执行失败：" + e.getMessage());
+            e.printStackTrace();
+        }
+        try {
+            topUrlSketchService.flush();
+        } catch (Exception e) {
+            System.err.println("高访问量URL草图合并任务执行失败：" + e.getMessage());
+            e.printStackTrace();
+        }
+    }
 
     /**
      * 每小时统计任务
-     * 每小时的第10分钟执行，统计上一小时的流量数据
+     * 每小时的第10分钟执行，统计上一小时的流量数据，同时补算回溯范围内缺失的小时
      * 例如：15:10执行，统计14:00-15:00的数据
      * 
      * Cron表达式：0 10 * * * ?
@@ -30,26 +55,12 @@ public class TaskService {
     @Scheduled(cron = "0 10 * * * ?")
     public void hourlyTrafficStatsTask() {
         try {
-            // 获取当前时间
-            Calendar calendar = Calendar.getInstance();
-            
-            // 计算上一小时的整点时间（例如当前15:10，计算14:00:00.000）
-            // 注意：先设置当前小时的整点，再减1小时，确保0点跨天计算正确
-            calendar.set(Calendar.MINUTE, 0);
-            calendar.set(Calendar.SECOND, 0);
-            calendar.set(Calendar.MILLISECOND, 0);
-            calendar.add(Calendar.HOUR_OF_DAY, -1);
-            
-            Date startTime = calendar.getTime();
-            
-            // 调用AdminService统计1小时流量数据
-            // 这里统计的是14:00-15:00的完整1小时数据
-            TrafficStats stats = adminService.calculateHourTrafficStats(startTime);
-            
+            // 统计access_stats_task_log中没有完成记录的小时（正常情况下只有上一小时）
+            int computedHours = trafficStatsBackfillService.catchUp();
+
             // 记录执行日志
-            System.out.println("每小时统计任务执行成功：" + startTime + " - 统计结果：PV=" + 
-                stats.getPageViews() + ", UV=" + stats.getUniqueVisitors());
-                
+            System.out.println("每小时统计任务执行成功：统计" + computedHours + "小时");
+
         } catch (Exception e) {
             // 记录错误日志
             System.err.println("每小时统计任务执行失败：" + e.getMessage());
@@ -57,6 +68,17 @@ public class TaskService {
         }
     }
 
-   
-    
+    /**
+     * 访问日志分区轮换任务
+     * 每天00:30执行，提前创建未来7天的分区，删除超过保留期的分区
+     */
+    @Scheduled(cron = "0 30 0 * * ?")
+    public void rotateAccessLogPartitionTask() {
+        try {
+            accessLogPartitionService.rotate();
+        } catch (Exception e) {
+            System.err.println("访问日志分区轮换任务执行失败：" + e.getMessage());
+            e.printStackTrace();
+        }
+    }
 }
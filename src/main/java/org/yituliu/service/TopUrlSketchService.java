@@ -0,0 +1,151 @@
+package org.yituliu.service;
+
+import org.springframework.stereotype.Service;
+import org.yituliu.common.utils.SpaceSavingSketch;
+import org.yituliu.common.utils.TimeBucketUtil;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 高访问量URL草图服务
+ * 写入访问日志时只累加(小时, URL)计数器，每分钟批量合并到按小时和按天的Space-Saving草图，查询Top URL时合并范围内的草图得到候选URL
+ * 候选URL的精确访问量再从URL小时预聚合表读取，不需要加载范围内的全部URL
+ * 草图只保存在内存中，服务启动前的时间段或超过保留期的时间段返回null，由调用方回退到完整聚合
+ */
+@Service
+public class TopUrlSketchService {
+
+    /**
+     * 每小时草图的计数器数量
+     */
+    private static final int HOUR_CAPACITY = 500;
+
+    /**
+     * 每天草图的计数器数量
+     */
+    private static final int DAY_CAPACITY = 1000;
+
+    /**
+     * 小时草图保留的小时数
+     */
+    private static final long RETAIN_HOURS = 48;
+
+    /**
+     * 天草图保留的天数
+     */
+    private static final long RETAIN_DAYS = 31;
+
+    /**
+     * 小时结束后保留累加计数器的时间
+     */
+    private static final long REMOVE_GRACE_MILLIS = 5 * TimeBucketUtil.ONE_MINUTE;
+
+    // epoch小时 → (url → 尚未合并到草图的访问次数)
+    private final Map<Long, Map<String, LongAdder>> pendingCounts = new ConcurrentHashMap<>();
+
+    // epoch小时 → 该小时的URL草图
+    private final Map<Long, SpaceSavingSketch> hourSketches = new ConcurrentHashMap<>();
+
+    // epoch天 → 该天的URL草图
+    private final Map<Long, SpaceSavingSketch> daySketches = new ConcurrentHashMap<>();
+
+    // 服务启动的时间，启动前开始的时间段在内存中的数据不完整
+    private final long trackingSince = System.currentTimeMillis();
+
+    /**
+     * 累计一次访问
+     * 请求线程只对(小时, URL)计数器做无锁累加，由flush每分钟批量合并到草图，草图的锁不在写入访问日志的路径上
+     *
+     * @param url        标准化后的URL
+     * @param accessTime 访问时间
+     */
+    public void offer(String url, Date accessTime) {
+        pendingCounts
+                .computeIfAbsent(TimeBucketUtil.toEpochHour(accessTime.getTime()), k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(url, k -> new LongAdder())
+                .increment();
+    }
+
+    /**
+     * 把累加的访问次数合并到小时和天草图，并清理过期草图
+     * 由每分钟的URL小时访问量写入任务调用，查询候选URL前也会调用
+     * 刚结束的小时在宽限期内保留计数器，与AccessRollupService.flush相同，避免移除后仍在累加的计数丢失
+     */
+    public synchronized void flush() {
+        long now = System.currentTimeMillis();
+        long removeBefore = TimeBucketUtil.toEpochHour(now - REMOVE_GRACE_MILLIS) - 1;
+        for (Long hour : pendingCounts.keySet()) {
+            Map<String, LongAdder> urlCount = hour <= removeBefore ? pendingCounts.remove(hour) : pendingCounts.get(hour);
+            if (urlCount == null) {
+                continue;
+            }
+            SpaceSavingSketch hourSketch = hourSketches.computeIfAbsent(hour, k -> new SpaceSavingSketch(HOUR_CAPACITY));
+            SpaceSavingSketch daySketch = daySketches.computeIfAbsent(TimeBucketUtil.epochHourToEpochDay(hour),
+                    k -> new SpaceSavingSketch(DAY_CAPACITY));
+            for (Map.Entry<String, LongAdder> entry : urlCount.entrySet()) {
+                long count = entry.getValue().sumThenReset();                 // 取出并清零，并发的累加计入下一次合并
+                if (count > 0) {
+                    hourSketch.offer(entry.getKey(), count);
+                    daySketch.offer(entry.getKey(), count);
+                }
+            }
+        }
+        evictExpired(TimeBucketUtil.toEpochHour(now), TimeBucketUtil.toEpochDay(now));
+    }
+
+    /**
+     * 合并时间范围内的草图，返回访问量最高的候选URL
+     * 开始时间所在的小时整体计入，与URL小时预聚合表的查询范围一致；整天在范围内时使用天草图
+     *
+     * @param startTime 开始时间
+     * @param endTime   结束时间
+     * @param count     候选URL数量
+     * @return 候选URL列表，草图不能覆盖时间范围时返回null
+     */
+    public List<String> topCandidates(Date startTime, Date endTime, int count) {
+        long firstHour = TimeBucketUtil.toEpochHour(startTime.getTime());
+        long endHour = TimeBucketUtil.toEpochHour(endTime.getTime() - 1) + 1;  // 包含结束时间所在的小时
+        long nowHour = TimeBucketUtil.toEpochHour(System.currentTimeMillis());
+        long nowDay = TimeBucketUtil.toEpochDay(System.currentTimeMillis());
+        flush();                                                             // 包含最近一分钟尚未合并的访问
+
+        SpaceSavingSketch merged = new SpaceSavingSketch(DAY_CAPACITY);
+        long hour = firstHour;
+        while (hour < endHour) {
+            if (TimeBucketUtil.toMillis(hour) < trackingSince) {
+                return null;                                                 // 服务启动前的时间段没有草图
+            }
+            long day = TimeBucketUtil.epochHourToEpochDay(hour);
+            long nextDayHour = TimeBucketUtil.epochDayToEpochHour(day + 1);
+            if (hour == TimeBucketUtil.epochDayToEpochHour(day) && nextDayHour <= endHour) {
+                if (day < nowDay - RETAIN_DAYS) {
+                    return null;
+                }
+                mergeIfPresent(merged, daySketches.get(day));                // 整天在范围内，使用天草图
+                hour = nextDayHour;
+            } else {
+                if (hour < nowHour - RETAIN_HOURS) {
+                    return null;
+                }
+                mergeIfPresent(merged, hourSketches.get(hour));
+                hour++;
+            }
+        }
+        return merged.topItems(count);
+    }
+
+    private void mergeIfPresent(SpaceSavingSketch merged, SpaceSavingSketch sketch) {
+        if (sketch != null) {                                                // 没有草图说明该时间段没有访问
+            merged.merge(sketch);
+        }
+    }
+
+    private void evictExpired(long nowHour, long nowDay) {
+        hourSketches.keySet().removeIf(hour -> hour < nowHour - RETAIN_HOURS);
+        daySketches.keySet().removeIf(day -> day < nowDay - RETAIN_DAYS);
+    }
+}
@@ -0,0 +1,145 @@
+package org.yituliu.service;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.yituliu.common.utils.IdGenerator;
+import org.yituliu.common.utils.LogUtils;
+import org.yituliu.common.utils.TimeBucketUtil;
+import org.yituliu.entity.po.AccessStatsTaskLog;
+import org.yituliu.mapper.AccessStatsTaskLogMapper;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 小时流量统计补算服务
+ * 每个统计完成的小时记录到access_stats_task_log，对比该表找出回溯范围内缺失的小时并补算
+ * 应用启动时补算停机期间缺失的小时，每小时定时任务也通过补算统计上一小时
+ * 统计结果按stat_start_time upsert，同一小时重复统计不会产生重复行
+ */
+@Service
+public class TrafficStatsBackfillService {
+
+    /**
+     * 任务类型
+     */
+    public static final String TASK_TYPE = "HOURLY_TRAFFIC_STATS";
+
+    /**
+     * 回溯的小时数，超过该范围的缺失小时不再补算
+     */
+    private static final int LOOKBACK_HOURS = 7 * 24;
+
+    /**
+     * 补算的并发线程数
+     */
+    private static final int BACKFILL_CONCURRENCY = 4;
+
+    /**
+     * 小时结束后等待的时间，等待该小时的访问日志全部写入后再统计
+     */
+    private static final long SETTLE_MILLIS = 10 * 60 * 1000L;
+
+    private final AdminService adminService;
+    private final AccessStatsTaskLogMapper accessStatsTaskLogMapper;
+    private final IdGenerator idGenerator;
+
+    public TrafficStatsBackfillService(AdminService adminService, AccessStatsTaskLogMapper accessStatsTaskLogMapper) {
+        this.adminService = adminService;
+        this.accessStatsTaskLogMapper = accessStatsTaskLogMapper;
+        this.idGenerator = new IdGenerator(1L);
+    }
+
+    /**
+     * 应用启动完成后在后台补算缺失的小时，不阻塞启动
+     */
+    @Async("asyncExecutor")
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        try {
+            catchUp();
+        } catch (Exception e) {
+            LogUtils.error("启动补算小时流量统计失败", e);
+        }
+    }
+
+    /**
+     * 补算回溯范围内所有未完成的小时，包括刚结束的上一小时
+     * 同一时间只允许一次补算，启动补算和定时任务不会重复统计同一小时
+     *
+     * @return 本次统计成功的小时数
+     */
+    public synchronized int catchUp() {
+        long endHour = TimeBucketUtil.toEpochHour(System.currentTimeMillis() - SETTLE_MILLIS);  // 已结束且等待足够时间的小时
+        long firstHour = endHour - LOOKBACK_HOURS;
+
+        Set<Long> completedHours = new HashSet<>();
+        for (Date startTime : accessStatsTaskLogMapper.selectCompletedStartTimes(TASK_TYPE,
+                new Date(TimeBucketUtil.toMillis(firstHour)), new Date(TimeBucketUtil.toMillis(endHour)))) {
+            completedHours.add(TimeBucketUtil.toEpochHour(startTime.getTime()));
+        }
+
+        List<Long> missingHours = new ArrayList<>();
+        for (long hour = firstHour; hour < endHour; hour++) {
+            if (!completedHours.contains(hour)) {
+                missingHours.add(hour);
+            }
+        }
+        if (missingHours.isEmpty()) {
+            return 0;
+        }
+
+        AtomicInteger succeeded = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>(missingHours.size());
+        for (Long hour : missingHours) {
+            tasks.add(() -> {
+                try {
+                    computeHour(hour);
+                    succeeded.incrementAndGet();
+                } catch (Exception e) {
+                    // 单个小时失败不影响其他小时，下一次补算时重试
+                    LogUtils.error("小时流量统计失败：{}", TimeBucketUtil.formatHour(hour), e);
+                }
+                return null;
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(BACKFILL_CONCURRENCY, missingHours.size()));
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LogUtils.error("小时流量统计补算失败", e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        LogUtils.info("小时流量统计补算完成：缺失{}小时，成功{}小时", missingHours.size(), succeeded.get());
+        return succeeded.get();
+    }
+
+    /**
+     * 统计一个小时并记录为已完成
+     */
+    private void computeHour(long epochHour) {
+        Date startTime = new Date(TimeBucketUtil.toMillis(epochHour));
+        Date endTime = new Date(TimeBucketUtil.toMillis(epochHour + 1));
+        adminService.calculateHourTrafficStats(startTime);
+
+        Date now = new Date();
+        accessStatsTaskLogMapper.upsert(new AccessStatsTaskLog(idGenerator.nextId(), startTime, endTime, TASK_TYPE, now, now));
+    }
+}
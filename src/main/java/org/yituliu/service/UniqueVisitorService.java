@@ -0,0 +1,179 @@
+package org.yituliu.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.yituliu.common.utils.HyperLogLog;
+import org.yituliu.common.utils.LogUtils;
+import org.yituliu.common.utils.TimeBucketUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 独立访客(UV)基数估计服务
+ * 写入访问日志时把IP加入所在小时的HyperLogLog，小时统计任务读取后随TrafficStats持久化
+ * 每个实例的HyperLogLog每分钟按寄存器取最大值合并到Redis，统计时读取所有实例合并后的结果
+ * 任意时间范围的UV由各小时的HyperLogLog合并得到，无需扫描原始日志
+ */
+@Service
+public class UniqueVisitorService {
+
+    /**
+     * 内存和Redis中最多保留的小时数，超过的小时统计时扫描原始日志重建
+     */
+    private static final long RETAIN_HOURS = 48;
+
+    // 小时 → 所有实例合并后的HyperLogLog寄存器
+    private static final String SKETCH_PREFIX = "uv:hour_sketch.";
+
+    // 小时 → 有实例在该小时中途启动，重启前的数据已丢失，统计时需要扫描原始日志
+    private static final String REBUILD_PREFIX = "uv:hour_rebuild.";
+
+    // 按寄存器取最大值合并HyperLogLog，与HyperLogLog.merge等价
+    private static final DefaultRedisScript<Long> MERGE_SCRIPT = new DefaultRedisScript<>(
+            "local sketch = ARGV[1] " +
+            "local current = redis.call('GET', KEYS[1]) " +
+            "if current and #current == #sketch then " +
+            "  local merged = {} " +
+            "  for i = 1, #sketch do " +
+            "    merged[i] = string.char(math.max(string.byte(sketch, i), string.byte(current, i))) " +
+            "  end " +
+            "  sketch = table.concat(merged) " +
+            "end " +
+            "redis.call('SET', KEYS[1], sketch, 'EX', tonumber(ARGV[2])) " +
+            "return 1",
+            Long.class);
+
+    private final RedisTemplate<String, byte[]> binaryRedisTemplate;
+
+    // epoch小时 → 本实例该小时IP的HyperLogLog
+    private final Map<Long, HyperLogLog> hourlySketches = new ConcurrentHashMap<>();
+
+    // 服务启动的时间，启动前开始的小时在内存中的数据不完整
+    private final long trackingSince = System.currentTimeMillis();
+
+    public UniqueVisitorService(@Qualifier("binaryRedisTemplate") RedisTemplate<String, byte[]> binaryRedisTemplate) {
+        this.binaryRedisTemplate = binaryRedisTemplate;
+    }
+
+    /**
+     * 启动时标记当前小时需要重建，本实例重启前该小时最后一次合并之后的访问已丢失
+     */
+    @PostConstruct
+    public void markStartupHour() {
+        long hour = TimeBucketUtil.toEpochHour(trackingSince);
+        try {
+            binaryRedisTemplate.opsForValue().set(REBUILD_PREFIX + hour, "1".getBytes(StandardCharsets.UTF_8),
+                    RETAIN_HOURS, TimeUnit.HOURS);
+        } catch (Exception e) {
+            LogUtils.error("标记UV重建小时失败：{}", TimeBucketUtil.formatHour(hour), e);
+        }
+    }
+
+    /**
+     * 记录一次访问的IP
+     *
+     * @param ip         客户端IP
+     * @param accessTime 访问时间
+     */
+    public void offer(String ip, Date accessTime) {
+        hourlySketches
+                .computeIfAbsent(TimeBucketUtil.toEpochHour(accessTime.getTime()), k -> new HyperLogLog())
+                .offer(ip);
+    }
+
+    /**
+     * 每分钟把本实例各小时的HyperLogLog合并到Redis，并清理超过保留期的小时
+     * 合并是幂等的，同一小时每次合并全部寄存器
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public void flush() {
+        long now = TimeBucketUtil.toEpochHour(System.currentTimeMillis());
+        hourlySketches.keySet().removeIf(hour -> hour < now - RETAIN_HOURS);   // 清理过期的小时
+        for (Map.Entry<Long, HyperLogLog> entry : hourlySketches.entrySet()) {
+            try {
+                mergeToRedis(entry.getKey(), entry.getValue());
+            } catch (Exception e) {
+                LogUtils.error("合并UV到Redis失败：{}", TimeBucketUtil.formatHour(entry.getKey()), e);
+                return;                                                       // Redis不可用时下一分钟重试
+            }
+        }
+    }
+
+    /**
+     * 获取指定小时所有实例合并后的HyperLogLog，先合并本实例的数据
+     * 以下情况返回null，由调用方扫描原始日志重建：
+     * 本实例在该小时开始之后才启动、有实例在该小时中途重启、Redis中没有该小时（超过保留期或没有任何实例记录）、Redis不可用
+     *
+     * @param epochHour epoch小时
+     * @return 该小时的HyperLogLog，数据不完整时返回null
+     */
+    public HyperLogLog getHourSketch(long epochHour) {
+        if (TimeBucketUtil.toMillis(epochHour) < trackingSince) {
+            return null;
+        }
+        try {
+            HyperLogLog local = hourlySketches.get(epochHour);
+            if (local != null) {
+                mergeToRedis(epochHour, local);
+            }
+            if (Boolean.TRUE.equals(binaryRedisTemplate.hasKey(REBUILD_PREFIX + epochHour))) {
+                return null;
+            }
+            byte[] bytes = binaryRedisTemplate.opsForValue().get(SKETCH_PREFIX + epochHour);
+            return bytes != null ? HyperLogLog.fromBytes(bytes) : null;
+        } catch (Exception e) {
+            LogUtils.error("读取UV合并结果失败：{}", TimeBucketUtil.formatHour(epochHour), e);
+            return null;
+        }
+    }
+
+    /**
+     * 该小时的统计结果已持久化，删除本实例内存中的HyperLogLog
+     *
+     * @param epochHour epoch小时
+     */
+    public void discardHourSketch(long epochHour) {
+        hourlySketches.remove(epochHour);
+    }
+
+    /**
+     * 获取指定小时尚未持久化的HyperLogLog，用于合并还未统计入库的小时
+     * 合并Redis中其他实例的数据和本实例内存中尚未合并到Redis的数据，Redis不可用时只返回本实例的数据
+     *
+     * @param epochHour epoch小时
+     * @return 该小时的HyperLogLog，不存在时返回null
+     */
+    public HyperLogLog peekHourSketch(long epochHour) {
+        HyperLogLog local = hourlySketches.get(epochHour);
+        byte[] bytes;
+        try {
+            bytes = binaryRedisTemplate.opsForValue().get(SKETCH_PREFIX + epochHour);
+        } catch (Exception e) {
+            LogUtils.error("读取UV合并结果失败：{}", TimeBucketUtil.formatHour(epochHour), e);
+            return local;
+        }
+        if (bytes == null) {
+            return local;
+        }
+        HyperLogLog merged = HyperLogLog.fromBytes(bytes);
+        if (local != null) {
+            merged.merge(local);
+        }
+        return merged;
+    }
+
+    private void mergeToRedis(long epochHour, HyperLogLog sketch) {
+        long ttlSeconds = TimeUnit.HOURS.toSeconds(RETAIN_HOURS);
+        binaryRedisTemplate.execute(MERGE_SCRIPT, List.of(SKETCH_PREFIX + epochHour),
+                sketch.toBytes(), String.valueOf(ttlSeconds).getBytes(StandardCharsets.UTF_8));
+    }
+}
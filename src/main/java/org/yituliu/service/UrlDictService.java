@@ -0,0 +1,115 @@
+package org.yituliu.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.stereotype.Service;
+import org.yituliu.common.utils.LogUtils;
+import org.yituliu.common.utils.UrlNormalizer;
+import org.yituliu.entity.po.UrlDict;
+import org.yituliu.mapper.UrlDictMapper;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * URL字典服务
+ * 标准化后的URL与整数ID双向缓存在内存中，写入访问日志和扫描原始日志时不需要访问url_dict表
+ * URL ID一旦分配不会改变，缓存不需要失效；缓存的URL数有上限，超过后未缓存的URL查询url_dict表
+ */
+@Service
+public class UrlDictService {
+
+    /**
+     * 内存中最多缓存的URL数，超过后新的URL不再缓存，每次查询url_dict表
+     * 标准化后的URL仍可能因为路径不同而无限增长（如爬虫访问的随机路径），需要限制内存占用
+     */
+    private static final int MAX_CACHED_URLS = 100_000;
+
+    private final UrlDictMapper urlDictMapper;
+
+    // 标准化URL → URL ID
+    private final Map<String, Integer> idByUrl = new ConcurrentHashMap<>();
+
+    // URL ID → 标准化URL，同一URL在内存中只保存一个String实例
+    private final Map<Integer, String> urlById = new ConcurrentHashMap<>();
+
+    public UrlDictService(UrlDictMapper urlDictMapper) {
+        this.urlDictMapper = urlDictMapper;
+    }
+
+    /**
+     * 启动时加载全部URL
+     */
+    @PostConstruct
+    public void preload() {
+        try {
+            for (UrlDict dict : urlDictMapper.selectAll()) {
+                cache(dict.getId(), dict.getUrl());
+            }
+        } catch (Exception e) {
+            // 加载失败时按需查询
+            LogUtils.error("URL字典加载失败", e);
+        }
+    }
+
+    /**
+     * 获取标准化URL的ID，URL不存在时插入url_dict
+     *
+     * @param url 标准化后的URL
+     * @return URL ID
+     */
+    public Integer idOf(String url) {
+        Integer id = idByUrl.get(url);
+        if (id != null) {
+            return id;
+        }
+        id = urlDictMapper.selectIdByUrl(url);
+        if (id == null) {
+            urlDictMapper.insertIgnore(url);                                 // 并发插入同一URL时只有一条生效
+            id = urlDictMapper.selectIdByUrl(url);
+        }
+        cache(id, url);
+        return id;
+    }
+
+    /**
+     * 获取URL ID对应的标准化URL
+     *
+     * @param id URL ID
+     * @return 标准化后的URL，ID不存在时返回"Unknown"
+     */
+    public String urlOf(Integer id) {
+        String url = urlById.get(id);
+        if (url != null) {
+            return url;
+        }
+        url = urlDictMapper.selectUrlById(id);
+        if (url == null) {
+            return UrlNormalizer.UNKNOWN;
+        }
+        cache(id, url);
+        return urlById.getOrDefault(id, url);                               // 已缓存时返回同一个String实例
+    }
+
+    /**
+     * 获取访问日志的标准URL
+     * 新日志只保存url_id，从缓存读取；旧日志只有url列，读取时标准化
+     *
+     * @param urlId  access_log.url_id
+     * @param rawUrl access_log.url
+     * @return 标准化后的URL
+     */
+    public String resolveUrl(Integer urlId, String rawUrl) {
+        if (urlId != null) {
+            return urlOf(urlId);
+        }
+        return UrlNormalizer.normalize(rawUrl);
+    }
+
+    private void cache(Integer id, String url) {
+        if (urlById.size() >= MAX_CACHED_URLS && !urlById.containsKey(id)) {
+            return;
+        }
+        String canonical = urlById.computeIfAbsent(id, k -> url);
+        idByUrl.putIfAbsent(canonical, id);
+    }
+}
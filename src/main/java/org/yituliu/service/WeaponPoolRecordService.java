@@ -1,15 +1,14 @@
 package org.yituliu.service;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.fasterxml.jackson.core.type.TypeReference;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.yituliu.common.utils.*;
 import org.yituliu.entity.dto.pool.record.*;
+import org.yituliu.entity.po.PlayerImportState;
 import org.yituliu.entity.po.WeaponPoolRecord;
 import org.yituliu.mapper.WeaponPoolRecordMapper;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -17,12 +16,13 @@ import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
-import static org.yituliu.common.utils.UrlEncodeUtil.smartUrlEncode;
-
 @Service
 public class WeaponPoolRecordService {
     private static final int BATCH_SIZE = 200; // 批处理大小
 
+    // 武器卡池在导入状态表中的卡池类型
+    private static final String WEAPON_POOL_TYPE = "Weapon";
+
     private final String LANG = "zh-cn";
 
     private final String SERVER_ID = "1";
@@ -31,6 +31,9 @@ public class WeaponPoolRecordService {
     private final WeaponPoolRecordMapper weaponPoolRecordMapper;
     private final IdGenerator idGenerator;
     private final Executor asyncExecutor;
+    private final PlayerImportStateService playerImportStateService;
+    private final TransactionTemplate transactionTemplate;
+    private final PoolRecordApiClient poolRecordApiClient;
 
 
     // 性能监控相关计数器
@@ -44,14 +47,23 @@ public class WeaponPoolRecordService {
     private final AtomicInteger activeTasks = new AtomicInteger(0);
 
     public WeaponPoolRecordService(WeaponPoolRecordMapper weaponPoolRecordMapper,
-                                   @Qualifier("asyncExecutor") Executor asyncExecutor) {
+                                   @Qualifier("asyncExecutor") Executor asyncExecutor,
+                                   PlayerImportStateService playerImportStateService,
+                                   TransactionTemplate transactionTemplate,
+                                   PoolRecordApiClient poolRecordApiClient) {
         this.weaponPoolRecordMapper = weaponPoolRecordMapper;
+        this.playerImportStateService = playerImportStateService;
+        this.transactionTemplate = transactionTemplate;
+        this.poolRecordApiClient = poolRecordApiClient;
         this.idGenerator = new IdGenerator(1L);
         this.asyncExecutor = asyncExecutor;  // 赋值给实例变量
 
     }
 
-    @Async("asyncExecutor")
+    /**
+     * 导入武器寻访记录，在调用方线程中同步执行
+     * 由PoolRecordTaskService在持有roleId导入锁期间调用，返回时记录和导入状态已提交
+     */
     public void saveWeaponPoolRecordAsync(EndfieldUserInfoDTO endfieldUserInfoDTO) {
 
         // 记录任务开始时间，用于计算处理耗时
@@ -61,36 +73,41 @@ public class WeaponPoolRecordService {
         String u8Token = endfieldUserInfoDTO.getU8Token();
         String logNickName = endfieldUserInfoDTO.getNickName();
 
-        Integer weaponPoolRecordMaxSeqId = weaponPoolRecordMapper.getMaxSeqIdNumber(roleId);
+        //读取武器卡池的导入状态，旧玩家没有导入状态时从已有记录初始化
+        PlayerImportState importState = playerImportStateService.getStates(roleId).get(WEAPON_POOL_TYPE);
+        if (importState == null) {
+            importState = initImportState(roleId);
+        }
+        Integer weaponPoolRecordMaxSeqId = importState.getMaxSeqId();
+        Integer headSeqId = null;
         //要持久化到数据库的干员寻访记录列表
         ArrayList<WeaponPoolRecord> weaponPoolRecordArrayList = new ArrayList<>();
 
         LogUtils.info("roleId：{} 开始处理武器抽卡记录导入任务，耗时：{} ms", roleId, System.currentTimeMillis() - startTime);
 
         // 并发处理所有池类型：为每个卡池类型创建异步任务
-        List<CompletableFuture<WeaponPoolRecordResponseDTO>> weaponPoolRecordFutures = new ArrayList<>();
+        List<CompletableFuture<PoolRecordPageDTO<WeaponPoolRecord>>> weaponPoolRecordFutures = new ArrayList<>();
 
         LogUtils.info("roleId：{} 开始创建武器卡池异步请求任务，耗时：{} ms", roleId, System.currentTimeMillis() - startTime);
 
         int weaponPoolRecordListSize = 10;
+        PoolRecordApiClient.Session session = poolRecordApiClient.session(u8Token, roleId);
 
 
         try {
             //不传入seq_id，获取第一页寻访记录的最后一个seq_id
-            WeaponPoolRecordResponseDTO weaponPoolRecordResponseDTO = requestWeaponPoolRecordAPI(u8Token, null);
-
-            List<WeaponPoolRecordDTO> weaponPoolRecordDTOList =
-                    weaponPoolRecordResponseDTO.getData().getList();
+            List<WeaponPoolRecord> firstPageRecords = session.weaponRecords(null).join().getList();
 
             //将获取到寻访记录插入到持久化对象集合中
-            weaponPoolRecordDTOList.forEach(e -> weaponPoolRecordArrayList.add(convertToEntity(e, roleId, SERVER_ID)));
+            weaponPoolRecordArrayList.addAll(firstPageRecords);
 
             //持久化对象集合的长度增加
-            weaponPoolRecordListSize += weaponPoolRecordDTOList.size();
+            weaponPoolRecordListSize += firstPageRecords.size();
+            headSeqId = Integer.valueOf(firstPageRecords.get(0).getSeqId());
 
             //获取第一页寻访记录的最后一个seq_id
-            String lastSeqId = weaponPoolRecordDTOList
-                    .get(weaponPoolRecordDTOList.size() - 1)
+            String lastSeqId = firstPageRecords
+                    .get(firstPageRecords.size() - 1)
                     .getSeqId();
 
             LogUtils.info("roleId：{} ，最大的seq_id：{}，耗时：{} ms",
@@ -103,10 +120,7 @@ public class WeaponPoolRecordService {
             //持久化对象集合的长度增加
             weaponPoolRecordListSize += seqIdList.size() * 5;
             for (String seqId : seqIdList) {
-                CompletableFuture<WeaponPoolRecordResponseDTO> future = CompletableFuture
-                        .supplyAsync(() ->
-                                requestWeaponPoolRecordAPI(u8Token, seqId), asyncExecutor);
-                weaponPoolRecordFutures.add(future);
+                weaponPoolRecordFutures.add(session.weaponRecords(seqId));
             }
 
             LogUtils.info("roleId：{} 武器卡池异步请求任务创建完成，耗时：{} ms", roleId, System.currentTimeMillis() - startTime);
@@ -126,20 +140,16 @@ public class WeaponPoolRecordService {
                     .thenApply(v -> {
                         // 创建用于存储所有结果的列表
                         // 遍历所有异步任务的future对象
-                        for (CompletableFuture<WeaponPoolRecordResponseDTO> future : weaponPoolRecordFutures) {
+                        for (CompletableFuture<PoolRecordPageDTO<WeaponPoolRecord>> future : weaponPoolRecordFutures) {
                             try {
                                 // future.get()：阻塞获取单个异步任务的结果
-                                // 这里每个future的结果是List<CharacterPoolRecordDTO>类型
-                                WeaponPoolRecordResponseDTO futureResult = future.get();
+                                // 这里每个future的结果是一页已解析为持久化对象的寻访记录
+                                PoolRecordPageDTO<WeaponPoolRecord> futureResult = future.get();
                                 if (0 != futureResult.getCode()) {
                                     continue;
                                 }
-                                List<WeaponPoolRecordDTO> characterPoolRecordDTOList = futureResult.getData().getList();
                                 // 将单个任务的结果合并到总结果列表中
-                                // 使用普通for循环代替流处理，减少流的开销
-                                for (WeaponPoolRecordDTO dto : characterPoolRecordDTOList) {
-                                    weaponPoolRecordArrayList.add(convertToEntity(dto, roleId, SERVER_ID));
-                                }
+                                weaponPoolRecordArrayList.addAll(futureResult.getList());
                             } catch (InterruptedException e) {
                                 // 处理线程中断异常
                                 LogUtils.error("异步任务被中断", e);
@@ -176,12 +186,34 @@ public class WeaponPoolRecordService {
 
         LogUtils.info("roleId: {} 开始插入武器寻访记录数据到数据库 耗时: {} ms", roleId, System.currentTimeMillis() - startTime);
         // 批量插入数据库 - 利用数据库唯一约束：将收集到的所有记录批量插入数据库
-        batchInsertWithUniqueIndex(weaponPoolRecordArrayList);
+        List<String> seqIds = new ArrayList<>(weaponPoolRecordArrayList.size());
+        for (WeaponPoolRecord record : weaponPoolRecordArrayList) {
+            seqIds.add(record.getSeqId());
+        }
+        PlayerImportState newImportState = PlayerImportStateService.advance(roleId, WEAPON_POOL_TYPE, importState,
+                headSeqId, seqIds, weaponPoolRecordMaxSeqId, false);
+        // 导入状态与寻访记录在同一事务中更新
+        transactionTemplate.executeWithoutResult(status -> {
+            batchInsertWithUniqueIndex(weaponPoolRecordArrayList);
+            playerImportStateService.save(List.of(newImportState));
+        });
         LogUtils.info("roleId：{} 武器寻访记录数据全部插入 耗时: {} ms", roleId, System.currentTimeMillis() - startTime);
 
     }
 
 
+    /**
+     * 根据已有的武器寻访记录初始化导入状态，每个玩家只执行一次
+     */
+    private PlayerImportState initImportState(String roleId) {
+        LambdaQueryWrapper<WeaponPoolRecord> queryWrapper = new LambdaQueryWrapper<>();
+        queryWrapper.eq(WeaponPoolRecord::getRoleId, roleId);
+        int recordCount = weaponPoolRecordMapper.selectCount(queryWrapper).intValue();
+        return PlayerImportStateService.initialStates(roleId, weaponPoolRecordMapper.getMaxSeqIdNumber(roleId),
+                Map.of(WEAPON_POOL_TYPE, recordCount), null).get(WEAPON_POOL_TYPE);
+    }
+
+
     private void batchInsertWithUniqueIndex(List<WeaponPoolRecord> weaponPoolRecordList) {
         // 创建处理结果对象
 
@@ -265,52 +297,5 @@ public class WeaponPoolRecordService {
         return weaponPoolRecordMapper.selectList(queryWrapper);
     }
 
-    private WeaponPoolRecordResponseDTO requestWeaponPoolRecordAPI(String u8Token, String seqId) {
-        String encodeToken = smartUrlEncode(u8Token);
-        String CHARACTER_RECORD_API = "https://ef-webview.hypergryph.com/api/record/weapon";
-        String url = CHARACTER_RECORD_API + "?lang=" + LANG + "&token=" + encodeToken + "&server_id=" + SERVER_ID;
-        if (seqId != null) {
-            url += "&seq_id=" + seqId;
-        }
-
-        Map<String, String> headers = PoolRecordTaskUtil.getHeader();
-        try {
-            String response = OkHttpUtil.getWithHeaders(url, headers);
-            WeaponPoolRecordResponseDTO weaponPoolRecordResponseDTO = JsonMapper.parseObject(response, new TypeReference<>() {
-            });
-
-            if (weaponPoolRecordResponseDTO == null || weaponPoolRecordResponseDTO.getData() == null
-                    || weaponPoolRecordResponseDTO.getData().getList() == null || weaponPoolRecordResponseDTO.getData().getList().isEmpty()) {
-                return new WeaponPoolRecordResponseDTO(500, null, "请求终末地角色抽卡记录失败");
-            }
-
-            return weaponPoolRecordResponseDTO;
-        } catch (IOException e) {
-            LogUtils.error("API请求失败: {}", url, e);
-            throw new RuntimeException("API请求失败", e);
-        }
-    }
-
-    /**
-     * 转换DTO到实体
-     */
-    private WeaponPoolRecord convertToEntity(WeaponPoolRecordDTO dto, String roleId, String serverId) {
-        return new WeaponPoolRecord(
-                idGenerator.nextId(),  // ID
-                roleId,                 // roleId
-                dto.getPoolId(),     // poolId
-                dto.getPoolName(),   // poolName
-                dto.getWeaponId(),     // weaponId
-                dto.getWeaponName(),   // weaponName
-                dto.getWeaponType(),   // weaponType
-                dto.getRarity(),     // rarity
-                dto.getIsNew(),      // isNew
-                dto.getGachaTs(),    // gachaTs
-                dto.getSeqId(),      // seqId
-                LANG,               // lang
-                serverId            // serverId
-        );
-    }
-
 
 }
@@ -1,9 +1,14 @@
 -- AccessLog表建表语句
 -- 访问日志表，用于记录用户访问信息
+-- 按天分区（RANGE COLUMNS），分区名pYYYYMMDD，p_future存放尚未创建分区的日期
+-- 分区由AccessLogPartitionService每天轮换：提前创建未来7天的分区，删除90天前的分区
+-- 分区表的主键和唯一键必须包含分区列，因此主键为(id, access_time)
+-- 按access_time范围查询（PV统计、游标分页扫描）时只扫描范围内的分区
 
 CREATE TABLE access_log (
-    id BIGINT PRIMARY KEY AUTO_INCREMENT COMMENT '主键ID',
-    url VARCHAR(500) NOT NULL COMMENT '访问URL',
+    id BIGINT NOT NULL AUTO_INCREMENT COMMENT '主键ID',
+    url VARCHAR(500) NULL COMMENT '访问URL（旧数据，新数据只保存url_id）',
+    url_id INT UNSIGNED NULL COMMENT '标准化URL的ID，对应url_dict.id',
     ip VARCHAR(45) NOT NULL COMMENT '客户端IP地址',
     region VARCHAR(100) DEFAULT 'Unknown' COMMENT '访问地区',
     referer VARCHAR(500) DEFAULT 'Unknown' COMMENT '来源页面',
@@ -14,25 +19,35 @@ CREATE TABLE access_log (
     access_time DATETIME NOT NULL COMMENT '访问时间',
     
     -- 索引定义
+    PRIMARY KEY (id, access_time) COMMENT '主键包含分区列',
     INDEX idx_access_time_ip (access_time, ip) COMMENT '时间+IP复合索引，优化PV/UV统计',
+    INDEX idx_access_time (access_time) COMMENT '时间索引，隐含主键id，用于按(access_time, id)游标分页扫描'
 ) 
 ENGINE=InnoDB 
 DEFAULT CHARSET=utf8mb4 
 COLLATE=utf8mb4_unicode_ci 
-COMMENT='访问日志表，记录用户访问信息用于统计分析';
+COMMENT='访问日志表，记录用户访问信息用于统计分析'
+PARTITION BY RANGE COLUMNS (access_time) (
+    PARTITION p20260101 VALUES LESS THAN ('2026-01-02'),
+    PARTITION p_future VALUES LESS THAN (MAXVALUE)
+);
 
--- 分区表建议（如果数据量巨大，千万级以上）
--- 按年分区，便于数据管理和查询优化
--- CREATE TABLE access_log (
---     ... 字段定义同上 ...
--- ) 
--- PARTITION BY RANGE (YEAR(access_time)) (
---     PARTITION p2024 VALUES LESS THAN (2025),
---     PARTITION p2025 VALUES LESS THAN (2026),
---     PARTITION p2026 VALUES LESS THAN (2027),
---     PARTITION p_future VALUES LESS THAN MAXVALUE
+-- 已有表转换为分区表（会重建整张表，在低峰期执行）
+-- 第一个分区的日期取上线当天，当天及之前的历史数据都在该分区中，超过保留期后整体删除；之后的分区由轮换任务逐天追加
+-- ALTER TABLE access_log DROP PRIMARY KEY, ADD PRIMARY KEY (id, access_time);
+-- ALTER TABLE access_log PARTITION BY RANGE COLUMNS (access_time) (
+--     PARTITION p20260101 VALUES LESS THAN ('2026-01-02'),
+--     PARTITION p_future VALUES LESS THAN (MAXVALUE)
 -- );
 
+-- 已有表补充游标分页索引
+-- ALTER TABLE access_log ADD INDEX idx_access_time (access_time) COMMENT '时间索引，隐含主键id，用于按(access_time, id)游标分页扫描';
+
+-- 已有表改为保存URL ID（新写入的行url为NULL，旧行保留url，url_id为NULL）
+-- ALTER TABLE access_log
+--     MODIFY COLUMN url VARCHAR(500) NULL COMMENT '访问URL（旧数据，新数据只保存url_id）',
+--     ADD COLUMN url_id INT UNSIGNED NULL COMMENT '标准化URL的ID，对应url_dict.id' AFTER url;
+
 -- 表注释和字段注释说明
 ALTER TABLE access_log COMMENT = '访问日志表 - 用户行为分析数据源';
 
@@ -77,8 +92,8 @@ GROUP BY browser
 ORDER BY count DESC;
 
 -- 性能优化建议
--- 1. 定期清理过期数据（保留最近N天）
--- DELETE FROM access_log WHERE access_time < DATE_SUB(NOW(), INTERVAL 90 DAY);
+-- 1. 过期数据由分区轮换任务DROP PARTITION清理，不再逐行DELETE
+-- 查看分区：SELECT PARTITION_NAME, TABLE_ROWS FROM information_schema.PARTITIONS WHERE TABLE_NAME = 'access_log';
 
 -- 2. 定期优化表
 -- OPTIMIZE TABLE access_log;
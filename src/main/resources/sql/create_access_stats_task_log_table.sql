@@ -0,0 +1,19 @@
+-- AccessStatsTaskLog表建表语句
+-- 记录已完成的统计窗口，启动时和每小时对比该表找出缺失的小时并补算
+
+CREATE TABLE access_stats_task_log (
+    id BIGINT NOT NULL COMMENT '主键ID',
+    start_time DATETIME NOT NULL COMMENT '统计开始时间',
+    end_time DATETIME NOT NULL COMMENT '统计结束时间',
+    task_type VARCHAR(50) NOT NULL COMMENT '任务类型',
+    create_time DATETIME NOT NULL COMMENT '创建时间',
+    update_time DATETIME NOT NULL COMMENT '更新时间',
+
+    -- 索引定义
+    PRIMARY KEY (id),
+    UNIQUE KEY uk_task_type_start_time (task_type, start_time) COMMENT '同一任务类型的每个窗口只记录一次'
+)
+ENGINE=InnoDB
+DEFAULT CHARSET=utf8mb4
+COLLATE=utf8mb4_unicode_ci
+COMMENT='访问统计任务日志表';
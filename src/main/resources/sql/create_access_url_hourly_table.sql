@@ -0,0 +1,24 @@
+-- AccessUrlHourly表建表语句
+-- URL小时访问量预聚合表，写入访问日志时在内存中累加，定时批量upsert
+-- 后台统计接口读取本表，30天范围每个URL最多720行，无需扫描access_log原始日志
+
+CREATE TABLE access_url_hourly (
+    url VARCHAR(500) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL COMMENT '标准化后的访问URL（见UrlNormalizer），区分大小写，与url_dict.url一致',
+    hour DATETIME NOT NULL COMMENT '整点小时',
+    pv BIGINT NOT NULL DEFAULT 0 COMMENT '该小时内的访问次数',
+
+    -- 索引定义
+    PRIMARY KEY (url, hour) COMMENT 'URL+小时主键，用于upsert累加',
+    INDEX idx_hour (hour) COMMENT '小时索引，优化按时间范围查询'
+)
+ENGINE=InnoDB
+DEFAULT CHARSET=utf8mb4
+COLLATE=utf8mb4_unicode_ci
+COMMENT='URL小时访问量预聚合表';
+
+-- 已有表改为与url_dict相同的区分大小写的排序规则
+-- ALTER TABLE access_url_hourly MODIFY COLUMN url VARCHAR(500) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL COMMENT '标准化后的访问URL（见UrlNormalizer），区分大小写，与url_dict.url一致';
+
+-- 从已有的access_log原始日志回填预聚合数据：调用 POST /access-log/url-hourly/rebuild?start=...&end=...
+-- 由AccessRollupService.rebuild扫描原始日志（含归档文件），URL的标准化与写入时的UrlNormalizer完全一致
+-- 重建结果覆盖已有的小时数据，可重复执行；不包含最近一小时，避免覆盖尚未写入的内存计数
@@ -0,0 +1,21 @@
+-- PlayerImportState表建表语句
+-- 玩家寻访记录导入状态表，每个玩家每种卡池一行
+-- 导入开始时按主键读取已导入的最大seq_id和新手池状态，代替对character_pool_record/weapon_pool_record的聚合查询
+-- 旧玩家第一次导入时从已有记录初始化
+
+CREATE TABLE player_import_state (
+    role_id VARCHAR(64) NOT NULL COMMENT '玩家roleId',
+    pool_type VARCHAR(64) NOT NULL COMMENT '卡池类型，武器卡池为Weapon',
+    max_seq_id INT NULL COMMENT '已导入记录的最大seq_id',
+    head_seq_id INT NULL COMMENT '上次导入时第一页第一条记录的seq_id',
+    record_count INT NOT NULL DEFAULT 0 COMMENT '已导入的记录数',
+    beginner_complete TINYINT(1) NOT NULL DEFAULT 0 COMMENT '新手池是否已抽完',
+    last_import_time DATETIME NOT NULL COMMENT '上次导入时间',
+
+    -- 索引定义
+    PRIMARY KEY (role_id, pool_type)
+)
+ENGINE=InnoDB
+DEFAULT CHARSET=utf8mb4
+COLLATE=utf8mb4_unicode_ci
+COMMENT='玩家寻访记录导入状态表';
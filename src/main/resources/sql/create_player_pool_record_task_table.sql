@@ -0,0 +1,24 @@
+-- PlayerPoolRecordTask表建表语句
+-- 寻访记录导入任务表，调度器每秒取出一个未开始且未过期的任务执行，过期任务每分钟批量标记为失败
+-- idx_start_flag_create_time同时用于调度查询（start_flag = false AND create_time >= 过期时间）和批量过期
+-- 已有表增加预估开销列：
+-- ALTER TABLE player_pool_record_task ADD COLUMN estimated_cost INT NULL COMMENT '预估开销（上游请求页数）' AFTER update_time;
+
+CREATE TABLE player_pool_record_task (
+    task_id VARCHAR(64) NOT NULL COMMENT '任务ID',
+    token VARCHAR(512) NULL COMMENT 'hgToken，任务完成后替换为随机值',
+    complete_flag TINYINT(1) NOT NULL DEFAULT 0 COMMENT '是否完成',
+    role_id VARCHAR(64) NULL COMMENT '玩家roleId，任务失败时为ERROR_TASK',
+    start_flag TINYINT(1) NOT NULL DEFAULT 0 COMMENT '是否已开始',
+    create_time DATETIME NOT NULL COMMENT '创建时间',
+    update_time DATETIME NULL COMMENT '更新时间',
+    estimated_cost INT NULL COMMENT '预估开销（上游请求页数），调度时开销小的任务优先',
+
+    -- 索引定义
+    PRIMARY KEY (task_id),
+    KEY idx_start_flag_create_time (start_flag, create_time) COMMENT '查询未开始的任务'
+)
+ENGINE=InnoDB
+DEFAULT CHARSET=utf8mb4
+COLLATE=utf8mb4_unicode_ci
+COMMENT='寻访记录导入任务表';
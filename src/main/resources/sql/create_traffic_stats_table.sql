@@ -0,0 +1,29 @@
+-- TrafficStats表建表语句
+-- 每小时一行的流量统计，由定时任务在每小时第10分钟写入上一小时的数据，启动时补算停机期间缺失的小时
+-- uv_sketch保存该小时独立访客的HyperLogLog寄存器（4096字节），合并任意多个小时即可估计范围UV，标准误差约1.6%
+
+CREATE TABLE traffic_stats (
+    id BIGINT NOT NULL COMMENT '主键ID',
+    page_views BIGINT NOT NULL DEFAULT 0 COMMENT '页面浏览量',
+    unique_visitors BIGINT NOT NULL DEFAULT 0 COMMENT '独立访客数（HyperLogLog估计值）',
+    stat_start_time DATETIME NOT NULL COMMENT '统计开始时间',
+    stat_end_time DATETIME NOT NULL COMMENT '统计结束时间',
+    create_time DATETIME NOT NULL COMMENT '创建时间',
+    uv_sketch BLOB NULL COMMENT '独立访客HyperLogLog寄存器',
+
+    -- 索引定义
+    PRIMARY KEY (id),
+    UNIQUE KEY uk_stat_start_time (stat_start_time) COMMENT '每小时只有一行，重复统计时upsert覆盖'
+)
+ENGINE=InnoDB
+DEFAULT CHARSET=utf8mb4
+COLLATE=utf8mb4_unicode_ci
+COMMENT='流量统计表';
+
+-- 已有表添加HyperLogLog列（旧数据为NULL，范围UV统计时跳过）
+-- ALTER TABLE traffic_stats ADD COLUMN uv_sketch BLOB NULL COMMENT '独立访客HyperLogLog寄存器';
+
+-- 已有表改为按统计开始时间唯一（先删除重复统计的行，保留每小时最新的一行）
+-- DELETE t1 FROM traffic_stats t1 JOIN traffic_stats t2
+--     ON t1.stat_start_time = t2.stat_start_time AND t1.create_time < t2.create_time;
+-- ALTER TABLE traffic_stats DROP INDEX idx_stat_start_time, ADD UNIQUE KEY uk_stat_start_time (stat_start_time);
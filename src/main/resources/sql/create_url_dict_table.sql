@@ -0,0 +1,20 @@
+-- UrlDict表建表语句
+-- URL字典表，每个标准化后的URL对应一个整数ID，access_log只保存url_id
+-- 标准化规则见UrlNormalizer：去掉锚点、结尾斜杠和推广/防缓存参数，其余查询参数排序
+-- url列使用utf8mb4_bin：UrlNormalizer按字节区分URL，不区分大小写的排序规则会把大小写不同的URL合并为一个ID
+
+CREATE TABLE url_dict (
+    id INT UNSIGNED NOT NULL AUTO_INCREMENT COMMENT 'URL ID',
+    url VARCHAR(500) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL COMMENT '标准化后的URL，区分大小写，与UrlNormalizer的结果逐字节对应',
+
+    -- 索引定义
+    PRIMARY KEY (id),
+    UNIQUE KEY uk_url (url) COMMENT 'URL唯一，用于INSERT IGNORE去重'
+)
+ENGINE=InnoDB
+DEFAULT CHARSET=utf8mb4
+COLLATE=utf8mb4_unicode_ci
+COMMENT='URL字典表';
+
+-- 已有表改为区分大小写的排序规则（已被合并的大小写变体不会拆分，新写入的URL按字节去重）
+-- ALTER TABLE url_dict MODIFY COLUMN url VARCHAR(500) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NOT NULL COMMENT '标准化后的URL，区分大小写，与UrlNormalizer的结果逐字节对应';
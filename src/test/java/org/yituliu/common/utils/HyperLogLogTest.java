@@ -0,0 +1,111 @@
+package org.yituliu.common.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HyperLogLogTest {
+
+    // 标准误差约1.6%，取3倍标准误差作为允许的相对误差
+    private static final double MAX_RELATIVE_ERROR = 0.05;
+
+    @Test
+    void estimatesCardinalityWithinErrorBound() {
+        for (int n : new int[]{1_000, 10_000, 100_000, 1_000_000}) {
+            HyperLogLog sketch = new HyperLogLog();
+            for (int i = 0; i < n; i++) {
+                sketch.offer("10.0." + i);
+            }
+            assertWithinErrorBound(n, sketch.cardinality());
+        }
+    }
+
+    @Test
+    void smallCardinalityIsNearlyExact() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 100; i++) {
+            sketch.offer("ip-" + i);
+            sketch.offer("ip-" + i);                                          // 重复的元素不计入基数
+        }
+        assertTrue(Math.abs(sketch.cardinality() - 100) <= 2, "cardinality=" + sketch.cardinality());
+        assertEquals(0, new HyperLogLog().cardinality());
+    }
+
+    @Test
+    void mergeEqualsSketchOfUnion() {
+        HyperLogLog left = new HyperLogLog();
+        HyperLogLog right = new HyperLogLog();
+        HyperLogLog union = new HyperLogLog();
+        for (int i = 0; i < 60_000; i++) {
+            left.offer("ip-" + i);
+            union.offer("ip-" + i);
+        }
+        for (int i = 40_000; i < 100_000; i++) {
+            right.offer("ip-" + i);
+            union.offer("ip-" + i);
+        }
+
+        left.merge(right);
+
+        assertArrayEquals(union.toBytes(), left.toBytes());
+        assertWithinErrorBound(100_000, left.cardinality());
+    }
+
+    @Test
+    void byteWiseMaxMergeMatchesMerge() {
+        HyperLogLog left = new HyperLogLog();
+        HyperLogLog right = new HyperLogLog();
+        for (int i = 0; i < 50_000; i++) {
+            left.offer("left-" + i);
+            right.offer("right-" + i);
+        }
+        byte[] leftBytes = left.toBytes();
+        byte[] rightBytes = right.toBytes();
+
+        // 与UniqueVisitorService中的Lua脚本相同：string.byte按无符号字节逐个取最大值
+        byte[] luaMerged = new byte[leftBytes.length];
+        for (int i = 0; i < leftBytes.length; i++) {
+            luaMerged[i] = (byte) Math.max(leftBytes[i] & 0xFF, rightBytes[i] & 0xFF);
+        }
+        left.merge(right);
+
+        assertArrayEquals(left.toBytes(), luaMerged);
+        assertEquals(left.cardinality(), HyperLogLog.fromBytes(luaMerged).cardinality());
+    }
+
+    @Test
+    void registersFitInSignedByte() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 200_000; i++) {
+            sketch.offerHash(HyperLogLog.hash("ip-" + i));
+        }
+        for (byte register : sketch.toBytes()) {
+            assertTrue(register >= 0, "register=" + register);              // 有符号与无符号比较结果一致
+        }
+    }
+
+    @Test
+    void bytesRoundTrip() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 5_000; i++) {
+            sketch.offer("ip-" + i);
+        }
+        HyperLogLog restored = HyperLogLog.fromBytes(sketch.toBytes());
+
+        assertArrayEquals(sketch.toBytes(), restored.toBytes());
+        assertEquals(sketch.cardinality(), restored.cardinality());
+    }
+
+    @Test
+    void fromBytesRejectsWrongLength() {
+        assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(new byte[16]));
+    }
+
+    private static void assertWithinErrorBound(long expected, long actual) {
+        double error = Math.abs(actual - expected) / (double) expected;
+        assertTrue(error < MAX_RELATIVE_ERROR, "expected≈" + expected + ", actual=" + actual);
+    }
+}
@@ -0,0 +1,100 @@
+package org.yituliu.common.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpaceSavingSketchTest {
+
+    private static final int CAPACITY = 50;
+
+    @Test
+    void exactWhileNotFull() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(CAPACITY);
+        sketch.offer("/a", 3);
+        sketch.offer("/b", 5);
+        sketch.offer("/a", 4);
+
+        assertEquals(List.of("/a", "/b"), sketch.topItems(10));
+        assertEquals(7, sketch.upperBound("/a"));
+        assertEquals(5, sketch.upperBound("/b"));
+        assertEquals(0, sketch.minCount());
+        assertEquals(0, sketch.upperBound("/c"));
+    }
+
+    @Test
+    void countsAreNeverUnderestimated() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(CAPACITY);
+        Map<String, Long> exact = new HashMap<>();
+        long total = offerSkewed(sketch, exact, "/url/", new Random(42), 200_000);
+
+        for (Map.Entry<String, Long> entry : exact.entrySet()) {
+            assertTrue(sketch.upperBound(entry.getKey()) >= entry.getValue(), entry.getKey());
+        }
+        assertTrue(sketch.minCount() <= total / CAPACITY);
+        assertHeavyHittersRetained(sketch, exact, total);
+    }
+
+    @Test
+    void topItemsOrderedByCount() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(CAPACITY);
+        Map<String, Long> exact = new HashMap<>();
+        offerSkewed(sketch, exact, "/url/", new Random(7), 100_000);
+
+        List<String> top = sketch.topItems(CAPACITY);
+        assertEquals(CAPACITY, top.size());
+        for (int i = 1; i < top.size(); i++) {
+            assertTrue(sketch.upperBound(top.get(i - 1)) >= sketch.upperBound(top.get(i)));
+        }
+        assertEquals("/url/0", top.get(0));                                  // 分布中最高频的元素
+    }
+
+    @Test
+    void mergeKeepsBoundsOfUnion() {
+        SpaceSavingSketch left = new SpaceSavingSketch(CAPACITY);
+        SpaceSavingSketch right = new SpaceSavingSketch(CAPACITY);
+        Map<String, Long> exact = new HashMap<>();
+        long total = offerSkewed(left, exact, "/url/", new Random(1), 100_000)
+                + offerSkewed(right, exact, "/url/", new Random(2), 100_000)
+                + offerSkewed(right, exact, "/other/", new Random(3), 50_000);
+
+        left.merge(right);
+
+        for (Map.Entry<String, Long> entry : exact.entrySet()) {
+            assertTrue(left.upperBound(entry.getKey()) >= entry.getValue(), entry.getKey());
+        }
+        assertHeavyHittersRetained(left, exact, total);
+    }
+
+    /**
+     * 按近似Zipf分布写入元素，大量低频元素会不断替换计数器
+     */
+    private static long offerSkewed(SpaceSavingSketch sketch, Map<String, Long> exact, String prefix,
+                                    Random random, int events) {
+        long total = 0;
+        for (int i = 0; i < events; i++) {
+            int rank = (int) Math.floor(Math.pow(10_000, random.nextDouble())) - 1;
+            String item = prefix + rank;
+            long count = 1 + random.nextInt(3);                               // 与按批累计的写入方式相同
+            sketch.offer(item, count);
+            exact.merge(item, count, Long::sum);
+            total += count;
+        }
+        return total;
+    }
+
+    private static void assertHeavyHittersRetained(SpaceSavingSketch sketch, Map<String, Long> exact, long total) {
+        List<String> retained = sketch.topItems(CAPACITY);
+        for (Map.Entry<String, Long> entry : exact.entrySet()) {
+            if (entry.getValue() > total / CAPACITY) {
+                assertTrue(retained.contains(entry.getKey()), entry.getKey());
+            }
+        }
+    }
+}
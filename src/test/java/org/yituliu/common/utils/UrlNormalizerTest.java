@@ -0,0 +1,73 @@
+package org.yituliu.common.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UrlNormalizerTest {
+
+    @Test
+    void blankUrlIsUnknown() {
+        assertEquals(UrlNormalizer.UNKNOWN, UrlNormalizer.normalize(null));
+        assertEquals(UrlNormalizer.UNKNOWN, UrlNormalizer.normalize(""));
+        assertEquals(UrlNormalizer.UNKNOWN, UrlNormalizer.normalize("   "));
+    }
+
+    @Test
+    void documentedExample() {
+        assertEquals("/tools/essence-calculator?a=1&b=2",
+                UrlNormalizer.normalize("/tools/essence-calculator/?utm_source=bili&b=2&a=1#top"));
+    }
+
+    @Test
+    void removesFragment() {
+        assertEquals("/gacha", UrlNormalizer.normalize("/gacha#record"));
+        assertEquals("/gacha?id=1", UrlNormalizer.normalize("/gacha?id=1#record"));
+        assertEquals("/", UrlNormalizer.normalize("#top"));
+    }
+
+    @Test
+    void stripsTrailingSlashExceptRoot() {
+        assertEquals("/gacha", UrlNormalizer.normalize("/gacha/"));
+        assertEquals("/gacha", UrlNormalizer.normalize("/gacha///"));
+        assertEquals("/", UrlNormalizer.normalize("/"));
+        assertEquals("/", UrlNormalizer.normalize("///"));
+        assertEquals("/?a=1", UrlNormalizer.normalize("/?a=1"));
+    }
+
+    @Test
+    void dropsUtmAndVolatileParams() {
+        assertEquals("/gacha", UrlNormalizer.normalize(
+                "/gacha?utm_source=bili&utm_medium=share&spm=1.2&from=app&vd_source=x&_t=123&t=1&ts=2&timestamp=3&_=4"));
+        assertEquals("/gacha", UrlNormalizer.normalize("/gacha?fbclid=a&gclid=b&msclkid=c"));
+        assertEquals("/gacha", UrlNormalizer.normalize("/gacha?share_source=qq&share_medium=ios&share_from=x"));
+        assertEquals("/gacha", UrlNormalizer.normalize("/gacha?"));
+        assertEquals("/gacha?page=2", UrlNormalizer.normalize("/gacha?utm_campaign=x&page=2"));
+    }
+
+    @Test
+    void keepsParamsThatOnlyResembleVolatileNames() {
+        assertEquals("/gacha?time=1&utm=2", UrlNormalizer.normalize("/gacha?utm=2&time=1"));
+        assertEquals("/gacha?type", UrlNormalizer.normalize("/gacha?type"));
+    }
+
+    @Test
+    void sortsParamsAndDropsEmptyOnes() {
+        assertEquals("/gacha?a=1&b=2&c=3", UrlNormalizer.normalize("/gacha?c=3&a=1&b=2"));
+        assertEquals(UrlNormalizer.normalize("/gacha?b=2&a=1"), UrlNormalizer.normalize("/gacha?a=1&b=2"));
+        assertEquals("/gacha?a=1&b=2", UrlNormalizer.normalize("/gacha?&b=2&&a=1&"));
+    }
+
+    @Test
+    void capsLengthAt500() {
+        String longPath = "/" + "a".repeat(600);
+        assertEquals(500, UrlNormalizer.normalize(longPath).length());
+        assertEquals(longPath.substring(0, 500), UrlNormalizer.normalize(longPath));
+
+        String longQuery = "/gacha?q=" + "x".repeat(600) + "&utm_source=bili";
+        assertEquals(500, UrlNormalizer.normalize(longQuery).length());
+
+        String exact = "/" + "b".repeat(499);
+        assertEquals(exact, UrlNormalizer.normalize(exact));
+    }
+}
@@ -0,0 +1,165 @@
+package org.yituliu.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AccessLogArchiveRoundTripTest {
+
+    private static final long DAY_START = 1_760_716_800_000L;                // 2025-10-18 00:00 +08:00
+
+    private static final long DAY_END = DAY_START + 24 * 3_600_000L;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripWithIp() throws IOException {
+        AccessLogArchiveWriter writer = new AccessLogArchiveWriter(DAY_START);
+        List<Visit> expected = List.of(
+                new Visit("/gacha", DAY_START, "1.1.1.1"),
+                new Visit("/gacha", DAY_START, "2.2.2.2"),                   // 同一毫秒的多条记录
+                new Visit("/tools/essence-calculator?a=1", DAY_START + 1_500, "1.1.1.1"),
+                new Visit("/", DAY_START + 3_600_000L, "Unknown"),
+                new Visit("/gacha", DAY_END - 1, "3.3.3.3"));
+        for (Visit visit : expected) {
+            writer.append(visit.url, visit.timeMillis, visit.ip);
+        }
+        assertEquals(expected.size(), writer.getRowCount());
+
+        assertEquals(expected, read(write(writer), DAY_START, DAY_END, true));
+    }
+
+    @Test
+    void nullIpIsStoredAsUnknown() throws IOException {
+        AccessLogArchiveWriter writer = new AccessLogArchiveWriter(DAY_START);
+        writer.append("/gacha", DAY_START + 10, null);
+
+        assertEquals(List.of(new Visit("/gacha", DAY_START + 10, "Unknown")),
+                read(write(writer), DAY_START, DAY_END, true));
+    }
+
+    @Test
+    void readWithoutIpColumn() throws IOException {
+        AccessLogArchiveWriter writer = new AccessLogArchiveWriter(DAY_START);
+        writer.append("/gacha", DAY_START + 10, "1.1.1.1");
+        writer.append("/", DAY_START + 20, "2.2.2.2");
+
+        List<Visit> visits = read(write(writer), DAY_START, DAY_END, false);
+
+        assertEquals(2, visits.size());
+        for (Visit visit : visits) {
+            assertNull(visit.ip);
+        }
+        assertEquals("/", visits.get(1).url);
+    }
+
+    @Test
+    void readsHalfOpenRange() throws IOException {
+        AccessLogArchiveWriter writer = new AccessLogArchiveWriter(DAY_START);
+        for (int hour = 0; hour < 24; hour++) {
+            writer.append("/hour/" + hour, DAY_START + hour * 3_600_000L, "1.1.1.1");
+        }
+        Path file = write(writer);
+
+        List<Visit> visits = read(file, DAY_START + 3 * 3_600_000L, DAY_START + 5 * 3_600_000L, false);
+
+        assertEquals(2, visits.size());
+        assertEquals("/hour/3", visits.get(0).url);
+        assertEquals("/hour/4", visits.get(1).url);
+        assertTrue(read(file, DAY_END, DAY_END + 3_600_000L, false).isEmpty());
+    }
+
+    @Test
+    void emptyDay() throws IOException {
+        AccessLogArchiveWriter writer = new AccessLogArchiveWriter(DAY_START);
+        assertEquals(0, writer.getRowCount());
+
+        Path file = write(writer);
+
+        assertTrue(read(file, DAY_START, DAY_END, true).isEmpty());
+        assertTrue(read(file, DAY_START, DAY_END, false).isEmpty());
+    }
+
+    @Test
+    void largeDictionariesRoundTrip() throws IOException {
+        // 不重复的URL和IP超过65536个，序号的varint需要3字节
+        int rows = 70_000;
+        AccessLogArchiveWriter writer = new AccessLogArchiveWriter(DAY_START);
+        for (int i = 0; i < rows; i++) {
+            writer.append("/page/" + i, DAY_START + i * 1_000L, "10." + (i >> 16) + "." + ((i >> 8) & 0xFF) + "." + (i & 0xFF));
+        }
+
+        List<Visit> visits = read(write(writer), DAY_START, DAY_END, true);
+
+        assertEquals(rows, visits.size());
+        for (int i = 0; i < rows; i += 997) {
+            Visit visit = visits.get(i);
+            assertEquals("/page/" + i, visit.url);
+            assertEquals(DAY_START + i * 1_000L, visit.timeMillis);
+            assertEquals("10." + (i >> 16) + "." + ((i >> 8) & 0xFF) + "." + (i & 0xFF), visit.ip);
+        }
+    }
+
+    @Test
+    void oversizedDictionaryEntryIsRejectedWithoutCorruptingColumns() throws IOException {
+        AccessLogArchiveWriter writer = new AccessLogArchiveWriter(DAY_START);
+        writer.append("/before", DAY_START + 10, "1.1.1.1");
+
+        String oversized = "/" + "中".repeat(30_000);                         // UTF-8编码约90000字节
+        assertThrows(IllegalArgumentException.class, () -> writer.append(oversized, DAY_START + 20, "1.1.1.1"));
+        assertThrows(IllegalArgumentException.class, () -> writer.append("/ip", DAY_START + 20, oversized));
+        writer.append("/after", DAY_START + 30, "2.2.2.2");
+
+        assertEquals(2, writer.getRowCount());
+        assertEquals(List.of(
+                        new Visit("/before", DAY_START + 10, "1.1.1.1"),
+                        new Visit("/after", DAY_START + 30, "2.2.2.2")),
+                read(write(writer), DAY_START, DAY_END, true));
+    }
+
+    @Test
+    void rejectsOutOfOrderAppend() {
+        AccessLogArchiveWriter writer = new AccessLogArchiveWriter(DAY_START);
+        writer.append("/gacha", DAY_START + 100, "1.1.1.1");
+
+        assertThrows(IllegalArgumentException.class, () -> writer.append("/gacha", DAY_START + 99, "1.1.1.1"));
+        assertThrows(IllegalArgumentException.class,
+                () -> new AccessLogArchiveWriter(DAY_START).append("/gacha", DAY_START - 1, "1.1.1.1"));
+    }
+
+    @Test
+    void rejectsFileWithoutMagic() throws IOException {
+        Path file = dir.resolve("not-an-archive.bin");
+        Files.write(file, "this is not an access log archive".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(IOException.class, () -> read(file, DAY_START, DAY_END, true));
+    }
+
+    private Path write(AccessLogArchiveWriter writer) throws IOException {
+        Path file = Files.createTempFile(dir, "access-log-", ".ala");
+        Files.write(file, writer.toBytes());
+        return file;
+    }
+
+    private static List<Visit> read(Path file, long startMillis, long endMillis, boolean includeIp) throws IOException {
+        List<Visit> visits = new ArrayList<>();
+        AccessLogArchiveReader.read(file, startMillis, endMillis, includeIp,
+                (url, timeMillis, ip) -> visits.add(new Visit(url, timeMillis, ip)));
+        return visits;
+    }
+
+    private record Visit(String url, long timeMillis, String ip) {
+    }
+}